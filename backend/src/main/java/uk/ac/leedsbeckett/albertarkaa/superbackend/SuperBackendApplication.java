@@ -2,9 +2,12 @@ package uk.ac.leedsbeckett.albertarkaa.superbackend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // This is the main class for the Spring Boot application
 @SpringBootApplication
+// Enable scheduled tasks such as the proxy cache warmer
+@EnableScheduling
 public class SuperBackendApplication {
 
     public static void main(String[] args) {
@@ -1,224 +1,117 @@
 package uk.ac.leedsbeckett.albertarkaa.superbackend.controller;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-
-import java.net.URI;
-import java.time.Duration;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.request.proxy.ProxyBatchRequest;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ProxyBatchResult;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.events.EventService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ApiProxyService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ProxyBatchService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.RouteSpeechService;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/proxy")
 public class ApiProxyController {
 
-    // This is a controller class that proxies requests to external APIs
-    private static final Logger logger = LoggerFactory.getLogger(ApiProxyController.class);
-
-    // WebClient is a non-blocking, reactive HTTP client that is part of the Spring WebFlux module and is used to make HTTP requests
-    private final WebClient webClient;
-
-    @Value("${WEATHER_API_KEY}")
-    private String WeatherApiKey;
-
-    @Value("${AIRQUALITY_API_KEY}")
-    private String airQualityApiKey;
+    // This is a controller class that proxies requests to external APIs through the ApiProxyService,
+    // which caches the upstream responses
+    private final ApiProxyService apiProxyService;
+    private final ProxyBatchService proxyBatchService;
+    private final RouteSpeechService routeSpeechService;
+    private final EventService eventService;
 
-    @Value("${OPENROUTE_API_KEY}")
-    private String openRouteApiKey;
-
-    @Value("${VOICERSS_API_KEY}")
-    private String voiceRssApiKey;
-
-    @Value("${PREDICTHQ_API_KEY}")
-    private String predictHqApiKey;
-
-    // This method fetches weather data from the WeatherMap API based on the latitude and longitude of a location
+    // This method fetches weather data from the WeatherAPI based on the latitude and longitude of a location,
+    // optionally in a compact form with only the current conditions, daily summaries and the next hours
     @GetMapping("/weather")
-   // @Cacheable(value = "weatherCache", key = "#lat + '-' + #lon", condition = "#result.statusCode.is2xxSuccessful()")
     public Mono<ResponseEntity<String>> getWeather(
             @RequestParam Double lat,
-            @RequestParam Double lon
+            @RequestParam Double lon,
+            @RequestParam(defaultValue = "false") boolean compact
     ) {
-        logger.info("Fetching weather data for lat: {}, lon: {}", lat, lon);
-
-        String cacheKey = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HH"));
-
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .scheme("https")
-                        .host("api.weatherapi.com")
-                        .path("/v1/forecast.json")
-                        .queryParam("key", WeatherApiKey)
-                        .queryParam("q", lat + "," + lon)
-                        .queryParam("days", 7)
-                        .queryParam("aqi", "no")
-                        .queryParam("alerts", "no")
-                        .queryParam("cache-buster", cacheKey)
-                        .build())
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(ResponseEntity::ok)
-                .timeout(Duration.ofSeconds(10))
-                .onErrorResume(this::handleError);
+        return apiProxyService.getWeather(lat, lon, compact);
     }
 
-    // This method fetches air quality data from the AirVisual API based on the latitude and longitude of a location
+    // This method fetches air quality data from the WAQI API based on the latitude and longitude of a location,
+    // optionally in a compact form without the attributions and forecasts
     @GetMapping("/air-quality")
-    // The @Cacheable annotation is used to cache the response of this method based on the input parameters
-    @Cacheable(value = "airQualityCache", key = "#lat + '-' + #lon", condition = "#lat != null && #lon != null")
-    public Mono<ResponseEntity<String>> getAirQuality(@RequestParam @NotNull Double lat, @RequestParam @NotNull Double lon) {
-        logger.info("Fetching air quality data for lat: {} and lon: {}", lat, lon);
-        return webClient.get()
-                .uri("https://api.waqi.info/feed/geo:{lat};{lon}/?token={apiKey}",
-                        lat, lon, airQualityApiKey)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(ResponseEntity::ok)
-                .timeout(Duration.ofSeconds(10))
-                .onErrorResume(this::handleError);
+    public Mono<ResponseEntity<String>> getAirQuality(@RequestParam @NotNull Double lat, @RequestParam @NotNull Double lon,
+                                                      @RequestParam(defaultValue = "false") boolean compact) {
+        return apiProxyService.getAirQuality(lat, lon, compact);
     }
 
-    // This method fetches directions data from the OpenRoute API based on the start and end locations and the profile
+    // This method fetches directions data from the OpenRoute API based on the start and end locations and the profile,
+    // optionally synthesising the spoken instructions of the route in the background
     @GetMapping("/directions")
-    // The @Cacheable annotation is used to cache the response of this method based on the input parameters
-    @Cacheable(value = "directionsCache", key = "#start + '-' + #end + '-' + #profile",
-            condition = "#start != null && #end != null && #profile != null")
     public Mono<ResponseEntity<String>> getDirections(
             @RequestParam @NotNull String start,
             @RequestParam @NotNull String end,
-            @RequestParam @NotNull String profile) {
-        logger.info("Fetching directions for start: {}, end: {}, profile: {}", start, end, profile);
-
-        String url = String.format("https://api.openrouteservice.org/v2/directions/%s?api_key=%s&start=%s&end=%s",
-                profile, openRouteApiKey, start, end);
+            @RequestParam @NotNull String profile,
+            @RequestParam(defaultValue = "false") boolean presynthesize) {
+        return routeSpeechService.getDirections(start, end, profile, presynthesize);
+    }
 
-        return webClient.get()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(ResponseEntity::ok)
-                .timeout(Duration.ofSeconds(15))
-                .onErrorResume(this::handleError);
+    // This method returns the spoken instructions of every step of a route as one multipart/mixed response
+    @GetMapping(value = "/directions/speech", produces = MediaType.MULTIPART_MIXED_VALUE)
+    public Mono<ResponseEntity<MultiValueMap<String, Object>>> getDirectionsSpeech(
+            @RequestParam @NotNull String start,
+            @RequestParam @NotNull String end,
+            @RequestParam @NotNull String profile) {
+        return routeSpeechService.getRouteAudio(start, end, profile);
     }
 
-    // This method fetches the text-to-speech conversion of an instruction using the VoiceRSS API and returns the audio file
+    // This method streams the text-to-speech conversion of an instruction using the VoiceRSS API, honouring a
+    // Range header so that the app can start playback before the whole audio file has arrived
     @GetMapping("/speak")
-    public Mono<byte[]> speakInstruction(@RequestParam String instruction) {
-        return webClient.get()
-                .uri("https://api.voicerss.org/?key={key}&hl=en-us&src={instruction}",
-                        voiceRssApiKey, instruction)
-                .retrieve()
-                .bodyToMono(byte[].class)
-                .onErrorResume(e -> {
-                    // Log the error and return an empty byte array or error message
-                    System.err.println("Error in text-to-speech conversion: " + e.getMessage());
-                    return Mono.just(new byte[0]);
-                });
+    public Mono<ResponseEntity<StreamingResponseBody>> speakInstruction(
+            @RequestParam String instruction,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        return apiProxyService.speak(instruction, range);
     }
 
-    // This method fetches events data from the PredictHQ API for the next 7 days within a 1.5 mile radius of Leeds, UK
+    // This method returns the coming events near a park (parkId), near a location (lat, lon and a radius in metres)
+    // or within a 1.5 mile radius of Leeds, UK, from the events index that is loaded from PredictHQ in the background
     @GetMapping("/events")
-    public Mono<String> fetchEvents() {
-        // Get the current date and the date 7 days from now
-        LocalDate now = LocalDate.now();
-        LocalDate futureDate = now.plusDays(7);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Build the URI for the PredictHQ API request with the required query parameters and headers for
-        // authentication and content type and make a GET request to fetch the events data for the next 7 days within a 1.5 mile radius of Leeds, UK
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .scheme("https")
-                        .host("api.predicthq.com")
-                        .path("/v1/events/")
-                        .queryParam("category", "expos,concerts,festivals,performing-arts,community,sports,public-holidays,observances,daylight-savings,airport-delays,severe-weather,disasters,terror,health-warnings")
-                        .queryParam("active.gte", now.format(formatter)) // Start date should be today
-                        .queryParam("active.lte", futureDate.format(formatter)) // End date should be 7 days from now
-                        .queryParam("state", "active") // Only active events
-                        .queryParam("sort", "start") // Sort by start date
-                        .queryParam("limit", 5) // Limit to 5 events
-                        .queryParam("saved_location.location_id", "WGr2NwsguUR5RKtD8iGV6Q")  // Leeds coordinates
-                        .build())
-                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .header(HttpHeaders.AUTHORIZATION, "Bearer " + predictHqApiKey)
-                .retrieve()
-                .bodyToMono(String.class)
-                .onErrorResume(e -> {
-                    // Log the error and return an empty JSON array or error message
-                    System.err.println("Error fetching events: " + e.getMessage());
-                    return Mono.just("[]");
-                });
+    public Mono<ResponseEntity<StreamingResponseBody>> fetchEvents(
+            @RequestParam(required = false) Long parkId,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(defaultValue = "5") int limit) {
+        return eventService.getEvents(parkId, lat, lon, radius, limit);
     }
 
+    // This method fetches points of interest from the OpenRoute API around a location
     @PostMapping("/points-of-interest")
-    @Cacheable(value = "poisCache", key = "#latitude + '-' + #longitude", condition = "#latitude != null && #longitude != null")
     public Mono<ResponseEntity<String>> getPointofInterest(
             @RequestParam @NotNull Double latitude,
             @RequestParam @NotNull Double longitude)
     {
-        logger.info("Fetching POIs for latitude: {} and longitude: {}", latitude, longitude);
-
-        List<Integer> categories = List.of(191, 564, 518, 601, 583);
-
-        // Create the request body for the POIs API call
-        Map<String, Object> requestBody = Map.of(
-                "request", "pois",
-                "geometry", Map.of(
-                        "geojson", Map.of(
-                                "type", "Point",
-                                "coordinates", List.of(longitude, latitude)
-                        ),
-                        "buffer", 500 // Buffer radius in meters, 500 meters
-                ),
-                "filters", Map.of(
-                        "category_ids", categories
-                )
-        );
-
-        return webClient.post()
-                .uri("https://api.openrouteservice.org/pois")
-                .header(HttpHeaders.AUTHORIZATION, openRouteApiKey)
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(ResponseEntity::ok)
-                .timeout(Duration.ofSeconds(10))
-                .onErrorResume(this::handleError);
+        return apiProxyService.getPointsOfInterest(latitude, longitude);
     }
 
-    // This method handles errors that occur during API calls and returns an appropriate response
-    private Mono<ResponseEntity<String>> handleError(Throwable error) {
-        if (error instanceof WebClientResponseException wcre) {
-            HttpStatus status = (HttpStatus) wcre.getStatusCode();
-            String body = wcre.getResponseBodyAsString();
-            logger.error("API call failed with status {}: {}", status, body, wcre);
-            return Mono.just(ResponseEntity.status(status).body(body));
-        } else {
-            logger.error("Unexpected error occurred", error);
-            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("An unexpected error occurred"));
+    // This method runs many proxy lookups from one request. Results are streamed as NDJSON in completion order,
+    // or returned as a JSON array when the client asks for application/json.
+    @PostMapping(value = "/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<ProxyBatchResult> batch(@RequestBody @Valid ProxyBatchRequest request) {
+        if (request.getRequests().size() > proxyBatchService.getMaxRequests()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch can contain at most " + proxyBatchService.getMaxRequests() + " requests");
         }
+        return proxyBatchService.execute(request.getRequests());
     }
 
 }
@@ -4,9 +4,15 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ConditionsSeriesResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ControllerResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkConditionsResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkSuggestionResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.ParkConditionsService;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.service.ParkService;
 
 import java.util.List;
@@ -21,6 +27,7 @@ import java.util.List;
 public class ParkController {
 
     private final ParkService parkService;
+    private final ParkConditionsService parkConditionsService;
 
     // Handle GET requests to /api/v1/parks/list-parks
     @GetMapping("/list-parks")
@@ -39,6 +46,46 @@ public class ParkController {
         }
     }
 
+    // Handle GET requests to /api/v1/parks/nearby, e.g. /nearby?lat=53.80&lon=-1.55&radius=2000&k=5
+    @GetMapping("/nearby")
+    public ResponseEntity<ControllerResponse<List<NearbyParkResponse>>> getNearbyParks(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(required = false) Integer k) {
+        // Call the ParkService to get the parks nearest to the location
+        ControllerResponse<List<NearbyParkResponse>> response = parkService.getNearbyParks(lat, lon, radius, k);
+
+        // Check if the service response is successful
+        if (response.isSuccess()) {
+            // Return HTTP 200 OK with the parks, nearest first
+            return ResponseEntity.ok(response);
+        } else {
+            // Return HTTP 400 Bad Request with the error response
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(response);
+        }
+    }
+
+    // Handle GET requests to /api/v1/parks/suggest, e.g. /suggest?prefix=round for the search box as the user types
+    @GetMapping("/suggest")
+    public ResponseEntity<ControllerResponse<List<ParkSuggestionResponse>>> getSuggestions(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit) {
+        // Call the ParkService to get the best rated parks matching the text typed so far
+        ControllerResponse<List<ParkSuggestionResponse>> response = parkService.getSuggestions(prefix, limit);
+
+        // Check if the service response is successful
+        if (response.isSuccess()) {
+            // Return HTTP 200 OK with the suggestions
+            return ResponseEntity.ok(response);
+        } else {
+            // Return HTTP 400 Bad Request with the error response
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(response);
+        }
+    }
+
     // Handle POST requests to /api/v1/parks/add-park
     @PostMapping("/add-park")
     public ResponseEntity<ControllerResponse<Object>> addPark(@RequestHeader("Authorization") String token,
@@ -110,4 +157,43 @@ public class ParkController {
         }
     }
 
+    // Handle GET requests to /api/v1/parks/{parkId}/conditions
+    @GetMapping("/{parkId}/conditions")
+    public Mono<ResponseEntity<ControllerResponse<ParkConditionsResponse>>> getParkConditions(@PathVariable int parkId) {
+        // Call the ParkConditionsService to get the weather, air quality, points of interest and events for the park
+        return parkConditionsService.getConditions(parkId)
+                .map(response -> {
+                    // Check if the service response is successful
+                    if (response.isSuccess()) {
+                        // Return HTTP 200 OK with the park conditions
+                        return ResponseEntity.ok(response);
+                    } else {
+                        // Return HTTP 400 Bad Request with the error response
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                .body(response);
+                    }
+                });
+    }
+
+    // Handle GET requests to /api/v1/parks/{parkId}/conditions/{view}, e.g. /conditions/hourly?length=6
+    @GetMapping("/{parkId}/conditions/{view}")
+    public Mono<ResponseEntity<ControllerResponse<ConditionsSeriesResponse>>> getParkConditionsView(
+            @PathVariable int parkId,
+            @PathVariable String view,
+            @RequestParam(required = false) Integer length) {
+        // Call the ParkConditionsService to get the view over time of the park's weather or air quality
+        return parkConditionsService.getConditionsView(parkId, view, length)
+                .map(response -> {
+                    // Check if the service response is successful
+                    if (response.isSuccess()) {
+                        // Return HTTP 200 OK with the view
+                        return ResponseEntity.ok(response);
+                    } else {
+                        // Return HTTP 400 Bad Request with the error response
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                .body(response);
+                    }
+                });
+    }
+
 }
@@ -0,0 +1,27 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.request.proxy;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProxyBatchItem {
+
+    // An identifier chosen by the client to match results to requests, since results arrive in completion order
+    @NotBlank(message = "id cannot be blank")
+    private String id;
+
+    // The proxy endpoint to call, e.g. "weather", "air-quality", "points-of-interest" or "directions"
+    @NotBlank(message = "provider cannot be blank")
+    private String provider;
+
+    // The same query parameters that the single proxy endpoint takes
+    private Map<String, String> params;
+}
@@ -0,0 +1,21 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.request.proxy;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProxyBatchRequest {
+
+    @NotEmpty(message = "requests cannot be empty")
+    @Valid
+    private List<ProxyBatchItem> requests;
+}
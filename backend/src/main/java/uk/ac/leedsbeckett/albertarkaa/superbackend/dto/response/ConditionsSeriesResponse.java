@@ -0,0 +1,26 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConditionsSeriesResponse {
+
+    private Long parkId;
+
+    private String view;
+
+    // The start of each hour or day, or the time of each reading, in epoch seconds
+    private List<Long> times;
+
+    // The values of each metric at those times, with null where the value is unknown
+    private Map<String, List<Float>> values;
+}
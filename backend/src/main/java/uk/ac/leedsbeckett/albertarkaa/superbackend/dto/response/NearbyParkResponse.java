@@ -0,0 +1,18 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyParkResponse {
+
+    // The great-circle distance from the searched location to the park, in metres
+    private double distance;
+
+    private ParksResponse park;
+}
@@ -0,0 +1,31 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ParkConditionsResponse {
+
+    private Long parkId;
+
+    // The upstream JSON documents are embedded as-is, and are null when that provider was unavailable
+    @JsonRawValue
+    private String weather;
+    @JsonRawValue
+    private String airQuality;
+    @JsonRawValue
+    private String pointsOfInterest;
+    @JsonRawValue
+    private String events;
+
+    // The names of the sections that could not be fetched in time
+    private List<String> unavailableSections;
+}
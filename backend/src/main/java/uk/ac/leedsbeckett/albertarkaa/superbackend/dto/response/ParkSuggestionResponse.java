@@ -0,0 +1,16 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ParkSuggestionResponse {
+
+    private Long id;
+    private String name;
+}
@@ -0,0 +1,26 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProxyBatchResult {
+
+    private String id;
+    private int status;
+
+    // The upstream JSON document for a successful sub-request, embedded as-is
+    @JsonRawValue
+    private String body;
+
+    // The error message for a failed sub-request
+    private String error;
+}
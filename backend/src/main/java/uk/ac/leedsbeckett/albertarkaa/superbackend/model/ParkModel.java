@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.util.List;
 import java.time.LocalDateTime;
@@ -37,12 +39,17 @@ public class ParkModel {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Each list is loaded for every park read by the same query at once, in one query per list, rather than
+    // with one query per park
     @ElementCollection
+    @Fetch(FetchMode.SUBSELECT)
     private List<String> accessibility;
 
     @ElementCollection
+    @Fetch(FetchMode.SUBSELECT)
     private List<String> childrenFeatures;
 
     @ElementCollection
+    @Fetch(FetchMode.SUBSELECT)
     private List<String> notices;
 }
\ No newline at end of file
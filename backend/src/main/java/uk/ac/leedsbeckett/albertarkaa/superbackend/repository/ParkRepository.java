@@ -10,5 +10,5 @@ import java.util.Optional;
 @Repository // This is a repository class
 public interface ParkRepository extends JpaRepository<ParkModel, Integer> {
     Optional<ParkModel> findByOpeningHours(String openingHours); // Find a park by opening hours
-    List<ParkModel> findByNameContainingIgnoreCase(String parkName); // Find parks by name
+    List<ParkModel> findByActiveTrue(); // Find parks that are currently active
 }
@@ -0,0 +1,229 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ConditionsSeriesResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ControllerResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkConditionsResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions.ConditionsStore;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions.ConditionsView;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions.TimeSeries;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.events.EventService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ApiProxyService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.GeoQuantizer;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ProxyEndpoint;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+@Service
+@RequiredArgsConstructor
+// This is a service class that gathers the weather, air quality, points of interest and events for a park in one call
+public class ParkConditionsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParkConditionsService.class);
+
+    private final ParkService parkService;
+    private final ApiProxyService apiProxyService;
+    private final ConditionsStore conditionsStore;
+    private final GeoQuantizer geoQuantizer;
+    private final EventService eventService;
+
+    // How long each section may take before it is left out of the response
+    @Value("${parks.conditions.timeout:PT5S}")
+    private Duration sectionTimeout;
+
+    // How many of the park's coming events are listed
+    @Value("${parks.conditions.event-limit:5}")
+    private int eventLimit;
+
+    // How long the stored readings of a tile answer views before they are read again through the proxy cache
+    @Value("${conditions.store.refresh-after:PT10M}")
+    private Duration refreshAfter;
+
+    // The most hours, days or readings one view may cover
+    private static final int MAX_VIEW_LENGTH = 168;
+
+    private static final long HOUR = 3600;
+    private static final long DAY = 86400;
+
+    // This method fetches every section for the park in parallel, so the response takes as long as the slowest
+    // provider. A section that fails or times out is returned as null and listed in unavailableSections.
+    public Mono<ControllerResponse<ParkConditionsResponse>> getConditions(int parkId) {
+        ControllerResponse<Object> parkResponse = parkService.getPark(parkId);
+        if (!parkResponse.isSuccess()) {
+            return Mono.just(new ControllerResponse<>(false, parkResponse.getErrorMessage(), null));
+        }
+        ParksResponse park = (ParksResponse) parkResponse.getData();
+        double lat = park.getLatitude();
+        double lon = park.getLongitude();
+
+        return Mono.zip(
+                        section("weather", apiProxyService.getBodyForTile(ProxyEndpoint.WEATHER, lat, lon)),
+                        section("airQuality", apiProxyService.getBodyForTile(ProxyEndpoint.AIR_QUALITY, lat, lon)),
+                        section("pointsOfInterest",
+                                apiProxyService.getBodyForTile(ProxyEndpoint.POINTS_OF_INTEREST, lat, lon)),
+                        section("events", eventService.getEventsForPark(park.getId(), lat, lon, eventLimit)))
+                .map(sections -> {
+                    List<String> unavailable = new ArrayList<>();
+                    ParkConditionsResponse conditions = ParkConditionsResponse.builder()
+                            .parkId(park.getId())
+                            .weather(valueOrRecord(sections.getT1(), "weather", unavailable))
+                            .airQuality(valueOrRecord(sections.getT2(), "airQuality", unavailable))
+                            .pointsOfInterest(valueOrRecord(sections.getT3(), "pointsOfInterest", unavailable))
+                            .events(valueOrRecord(sections.getT4(), "events", unavailable))
+                            .unavailableSections(unavailable)
+                            .build();
+                    return new ControllerResponse<>(true, "Park conditions retrieved successfully", conditions);
+                });
+    }
+
+    // This method answers a view over time of the park's conditions from the conditions store. The readings are
+    // fetched through the proxy only when the store has none for the park's tile or they are older than the refresh
+    // interval, so every view of a park is served by the same upstream response.
+    public Mono<ControllerResponse<ConditionsSeriesResponse>> getConditionsView(int parkId, String viewName,
+                                                                                Integer length) {
+        Optional<ConditionsView> view = ConditionsView.fromPathName(viewName);
+        if (view.isEmpty()) {
+            return Mono.just(new ControllerResponse<>(false, "Unknown conditions view: " + viewName, null));
+        }
+        ControllerResponse<Object> parkResponse = parkService.getPark(parkId);
+        if (!parkResponse.isSuccess()) {
+            return Mono.just(new ControllerResponse<>(false, parkResponse.getErrorMessage(), null));
+        }
+        ParksResponse park = (ParksResponse) parkResponse.getData();
+        double lat = park.getLatitude();
+        double lon = park.getLongitude();
+        int count = length == null ? view.get().getDefaultLength() : Math.max(1, Math.min(length, MAX_VIEW_LENGTH));
+
+        long now = Instant.now().getEpochSecond();
+        long currentHour = Math.floorDiv(now, HOUR) * HOUR;
+        long today = Math.floorDiv(now, DAY) * DAY;
+        Mono<Map<String, TimeSeries.Slice>> series = switch (view.get()) {
+            case CURRENT -> Mono.zip(
+                            weather(lat, lon).map(weather -> Optional.of(weather.observed().raw().latest(1)))
+                                    .onErrorResume(error -> Mono.just(Optional.empty())),
+                            airQuality(lat, lon).map(readings -> Optional.of(readings.raw().latest(1)))
+                                    .onErrorResume(error -> Mono.just(Optional.empty())))
+                    .map(current -> {
+                        Map<String, TimeSeries.Slice> slices = new LinkedHashMap<>();
+                        current.getT1().ifPresent(slice -> slices.put("weather", slice));
+                        current.getT2().ifPresent(slice -> slices.put("airQuality", slice));
+                        return slices;
+                    });
+            case HOURLY -> weather(lat, lon).map(weather -> Map.of("weather", weather.hourlyForecast()
+                    .map(forecast -> forecast.range(currentHour, currentHour + count * HOUR))
+                    .orElseGet(TimeSeries.Slice::empty)));
+            case DAILY -> weather(lat, lon).map(weather -> Map.of("weather", weather.dailyForecast()
+                    .map(forecast -> forecast.range(today, today + count * DAY))
+                    .orElseGet(TimeSeries.Slice::empty)));
+            case AQI_TREND -> airQuality(lat, lon).map(readings -> Map.of("airQuality",
+                    readings.hourly().range(currentHour - (count - 1) * HOUR, currentHour + HOUR)));
+            case WEATHER_TREND -> weather(lat, lon).map(weather -> Map.of("weather",
+                    weather.observed().hourly().range(currentHour - (count - 1) * HOUR, currentHour + HOUR)));
+        };
+
+        return series
+                .map(slices -> new ControllerResponse<>(true, "Park conditions retrieved successfully",
+                        toSeriesResponse(park.getId(), view.get(), slices)))
+                .onErrorResume(error -> {
+                    logger.warn("Park conditions view {} unavailable: {}", viewName, error.getMessage());
+                    return Mono.just(new ControllerResponse<>(false, "Park conditions are unavailable", null));
+                });
+    }
+
+    // This method returns the stored weather of the tile containing a location, reading it through the proxy first
+    // when the store has no recent readings for the tile
+    private Mono<ConditionsStore.WeatherSeries> weather(double lat, double lon) {
+        return stored(ProxyEndpoint.WEATHER, lat, lon, geohash -> conditionsStore.weather(geohash, refreshAfter));
+    }
+
+    // This method returns the stored air quality of the tile containing a location in the same way
+    private Mono<ConditionsStore.Observations> airQuality(double lat, double lon) {
+        return stored(ProxyEndpoint.AIR_QUALITY, lat, lon,
+                geohash -> conditionsStore.airQuality(geohash, refreshAfter));
+    }
+
+    private <T> Mono<T> stored(ProxyEndpoint endpoint, double lat, double lon,
+                               Function<String, Optional<T>> lookup) {
+        String geohash = geoQuantizer.tileFor(endpoint, lat, lon).geohash();
+        return Mono.defer(() -> lookup.apply(geohash).map(Mono::just).orElseGet(() -> apiProxyService
+                .getBodyForTile(endpoint, lat, lon)
+                .timeout(sectionTimeout)
+                .doOnNext(body -> conditionsStore.record(endpoint, geohash, body))
+                .then(Mono.defer(() -> Mono.justOrEmpty(lookup.apply(geohash))))
+                .switchIfEmpty(Mono.error(new IllegalStateException(
+                        "No " + endpoint.getPropertyName() + " readings for " + geohash)))));
+    }
+
+    // This method lays the slices out as one list of times and one list of values per metric. When the slices come
+    // from both sources (the current view) their metrics are merged and the latest time is given.
+    private ConditionsSeriesResponse toSeriesResponse(Long parkId, ConditionsView view,
+                                                      Map<String, TimeSeries.Slice> slices) {
+        List<Long> times = new ArrayList<>();
+        Map<String, List<Float>> values = new LinkedHashMap<>();
+        for (Map.Entry<String, TimeSeries.Slice> entry : slices.entrySet()) {
+            TimeSeries.Slice slice = entry.getValue();
+            List<String> metrics = metricsOf(view, entry.getKey());
+            for (int metric = 0; metric < metrics.size() && metric < slice.values().length; metric++) {
+                List<Float> column = new ArrayList<>(slice.times().length);
+                for (float value : slice.values()[metric]) {
+                    column.add(Float.isNaN(value) ? null : value);
+                }
+                values.put(metrics.get(metric), column);
+            }
+            if (times.isEmpty()) {
+                for (long time : slice.times()) {
+                    times.add(time);
+                }
+            } else if (slice.times().length > 0) {
+                times.set(0, Math.max(times.get(0), slice.times()[0]));
+            }
+        }
+        return ConditionsSeriesResponse.builder()
+                .parkId(parkId)
+                .view(view.getPathName())
+                .times(times)
+                .values(values)
+                .build();
+    }
+
+    private static List<String> metricsOf(ConditionsView view, String source) {
+        return switch (view) {
+            case HOURLY -> ConditionsStore.HOURLY_FORECAST_METRICS;
+            case DAILY -> ConditionsStore.DAILY_FORECAST_METRICS;
+            default -> "airQuality".equals(source) ? ConditionsStore.AIR_QUALITY_METRICS
+                    : ConditionsStore.WEATHER_METRICS;
+        };
+    }
+
+    // This method bounds a section by the timeout and turns a failure into an empty value
+    private Mono<Optional<String>> section(String name, Mono<String> body) {
+        return body.timeout(sectionTimeout)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(error -> {
+                    logger.warn("Park conditions section {} unavailable: {}", name, error.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    // This method returns the section's body, or records the section as unavailable
+    private String valueOrRecord(Optional<String> section, String name, List<String> unavailable) {
+        if (section.isEmpty()) {
+            unavailable.add(name);
+        }
+        return section.orElse(null);
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog.ParkCatalog;
 
 import java.io.InputStream;
 import java.util.List;
@@ -21,6 +22,7 @@ public class ParkDataSeedService implements ApplicationRunner {
 
     private final ParkRepository parkRepository;
     private final ObjectMapper objectMapper;
+    private final ParkCatalog parkCatalog;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
@@ -38,6 +40,10 @@ public class ParkDataSeedService implements ApplicationRunner {
             } else {
                 System.out.println("Data seeding not required");
             }
+
+            // The catalog is loaded here rather than by the first request that needs it, and is read again in case
+            // requests were served before seeding finished
+            parkCatalog.reload();
         } catch (Exception e) {
             System.out.println("Error occurred during data seeding");
         }
@@ -2,13 +2,17 @@ package uk.ac.leedsbeckett.albertarkaa.superbackend.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ControllerResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkSuggestionResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.model.UserModel;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog.ParkCatalog;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.util.Authentication.AuthServiceImplementation;
 
 import java.io.InputStream;
@@ -16,7 +20,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,22 +28,31 @@ public class ParkService {
 
     private final ParkRepository parkRepository;
     private final AuthServiceImplementation authServiceImplementation;
+    private final ParkCatalog parkCatalog;
 
+    // How many parks a nearby search returns when no count is asked for
+    @Value("${parks.nearby.default-results:10}")
+    private int defaultNearbyResults;
 
-    // This method retrieves parks
+    // The most parks one nearby search may return
+    @Value("${parks.nearby.max-results:100}")
+    private int maxNearbyResults;
+
+    // The most parks one search of the list by name, postcode, address or description returns
+    @Value("${parks.search.max-results:50}")
+    private int maxSearchResults;
+
+
+    // This method retrieves parks from the in-memory catalog, all of them or those best matching the search text
     public ControllerResponse<List<ParksResponse>> getParks(String parkName) {
         try {
-            List<ParkModel> parkModels;
+            List<ParksResponse> parksResponses;
             if (parkName == null || parkName.isBlank()) {
-                parkModels = parkRepository.findAll();
+                parksResponses = parkCatalog.all();
             } else {
-                parkModels = parkRepository.findByNameContainingIgnoreCase(parkName);
+                parksResponses = parkCatalog.search(parkName, maxSearchResults);
             }
 
-            List<ParksResponse> parksResponses = parkModels.stream()
-                    .map(this::mapToParksResponse)
-                    .collect(Collectors.toList());
-
             return new ControllerResponse<>(true, "Parks retrieved successfully", parksResponses);
         } catch (Exception e) {
             Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error retrieving parks", e);
@@ -48,6 +60,44 @@ public class ParkService {
         }
     }
 
+    // This method retrieves the parks nearest to a location, optionally only those within a radius in metres.
+    // Without a count, the default number of parks is returned, or as many as allowed when a radius is given.
+    public ControllerResponse<List<NearbyParkResponse>> getNearbyParks(double lat, double lon, Double radius,
+                                                                       Integer k) {
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            return new ControllerResponse<>(false, "Invalid coordinates", null);
+        }
+        if ((radius != null && radius <= 0) || (k != null && k <= 0)) {
+            return new ControllerResponse<>(false, "The radius and count must be positive", null);
+        }
+        try {
+            int limit = Math.min(k != null ? k : radius != null ? maxNearbyResults : defaultNearbyResults,
+                    maxNearbyResults);
+            List<NearbyParkResponse> parks = parkCatalog.nearby(lat, lon,
+                    radius != null ? radius : Double.POSITIVE_INFINITY, limit);
+            return new ControllerResponse<>(true, "Parks retrieved successfully", parks);
+        } catch (Exception e) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error retrieving nearby parks", e);
+            return new ControllerResponse<>(false, "Error retrieving parks: " + e.getMessage(), null);
+        }
+    }
+
+    // This method retrieves the ids and names of the best rated parks whose name or postcode starts with the text
+    // typed so far
+    public ControllerResponse<List<ParkSuggestionResponse>> getSuggestions(String prefix, Integer limit) {
+        if (limit != null && limit <= 0) {
+            return new ControllerResponse<>(false, "The count must be positive", null);
+        }
+        try {
+            List<ParkSuggestionResponse> suggestions = parkCatalog.suggest(prefix,
+                    limit != null ? limit : Integer.MAX_VALUE);
+            return new ControllerResponse<>(true, "Suggestions retrieved successfully", suggestions);
+        } catch (Exception e) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error retrieving park suggestions", e);
+            return new ControllerResponse<>(false, "Error retrieving suggestions: " + e.getMessage(), null);
+        }
+    }
+
     // This method adds a park
     public ControllerResponse<Object> addPark(String token, ParkModel parkModel) {
         try {
@@ -56,7 +106,8 @@ public class ParkService {
                 return new ControllerResponse<>(false, "User not authorised", null);
             }
 
-            parkRepository.save(parkModel);
+            ParkModel saved = parkRepository.save(parkModel);
+            parkCatalog.refresh(saved.getId());
             return new ControllerResponse<>(true, "Park added successfully", null);
         } catch (Exception e) {
             return new ControllerResponse<>(false, "Error adding park: " + e.getMessage(), null);
@@ -71,7 +122,8 @@ public class ParkService {
                 return new ControllerResponse<>(false, "User not authorised", null);
             }
 
-            parkRepository.save(parkModel);
+            ParkModel saved = parkRepository.save(parkModel);
+            parkCatalog.refresh(saved.getId());
             return new ControllerResponse<>(true, "Park updated successfully", null);
         } catch (Exception e) {
             return new ControllerResponse<>(false, "Error updating park: " + e.getMessage(), null);
@@ -87,48 +139,23 @@ public class ParkService {
             }
 
             parkRepository.deleteById(parkId);
+            parkCatalog.refresh(parkId);
             return new ControllerResponse<>(true, "Park deleted successfully", null);
         } catch (Exception e) {
             return new ControllerResponse<>(false, "Error deleting park: " + e.getMessage(), null);
         }
     }
 
-    // This method retrieves a park
+    // This method retrieves a park from the in-memory catalog
     public ControllerResponse<Object> getPark(int parkId) {
         try {
-            ParkModel parkModel = parkRepository.findById(parkId).orElse(null);
-            if (parkModel == null) {
+            ParksResponse park = parkCatalog.get(parkId).orElse(null);
+            if (park == null) {
                 return new ControllerResponse<>(false, "Park not found", null);
             }
-            return new ControllerResponse<>(true, "Park retrieved successfully", mapToParksResponse(parkModel));
+            return new ControllerResponse<>(true, "Park retrieved successfully", park);
         } catch (Exception e) {
             return new ControllerResponse<>(false, "Error retrieving park: " + e.getMessage(), null);
         }
     }
-
-    // This method retrieves parks
-    private ParksResponse mapToParksResponse(ParkModel parkModel) {
-        ParksResponse response = new ParksResponse();
-        // Map existing fields
-        response.setId(parkModel.getId());
-        response.setName(parkModel.getName());
-        response.setImageUrl(parkModel.getImageUrl());
-        response.setRating(parkModel.getRating());
-        response.setReviewCount(parkModel.getReviewCount());
-        response.setAddress(parkModel.getAddress());
-        response.setLatitude(parkModel.getLatitude());
-        response.setLongitude(parkModel.getLongitude());
-        response.setPostcode(parkModel.getPostcode());
-        response.setDescription(parkModel.getDescription());
-        response.setOpeningHours(parkModel.getOpeningHours());
-        response.setParkWebsite(parkModel.getParkWebsite());
-        response.setActive(parkModel.isActive());
-        response.setCreatedAt(parkModel.getCreatedAt());
-        response.setUpdatedAt(parkModel.getUpdatedAt());
-        response.setAccessibility(parkModel.getAccessibility());
-        response.setChildrenFeatures(parkModel.getChildrenFeatures());
-        response.setNotices(parkModel.getNotices());
-
-        return response;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkSuggestionResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+// This class holds every park in memory as the ParksResponse that is sent to the app, so that park reads never go
+// through Hibernate. The parks are kept, with a grid index of their locations, an index of the words they contain
+// and a trie of name and postcode prefixes, in an immutable snapshot that is read without locking. Writes go to the
+// database first, then a copy of the snapshot with the changed park re-read is swapped in.
+public class ParkCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParkCatalog.class);
+
+    private static final Comparator<ParksResponse> BY_ID = Comparator.comparing(ParksResponse::getId,
+            Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ParkRepository parkRepository;
+    private final TransactionOperations readTransaction;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ParkCatalog(ParkRepository parkRepository, PlatformTransactionManager transactionManager) {
+        this(parkRepository, readOnly(transactionManager));
+    }
+
+    ParkCatalog(ParkRepository parkRepository, TransactionOperations readTransaction) {
+        this.parkRepository = parkRepository;
+        this.readTransaction = readTransaction;
+    }
+
+    // This method returns every park, ordered by id
+    public List<ParksResponse> all() {
+        return current().parks();
+    }
+
+    // This method returns the park with the given id
+    public Optional<ParksResponse> get(long parkId) {
+        return Optional.ofNullable(current().byId().get(parkId));
+    }
+
+    // This method returns up to limit parks matching the words of a query in their name, postcode, address or
+    // description, best match first
+    public List<ParksResponse> search(String query, int limit) {
+        return current().search().search(query, limit);
+    }
+
+    // This method returns up to limit parks within the radius of a location, nearest first, with their distances
+    public List<NearbyParkResponse> nearby(double latitude, double longitude, double radiusMetres, int limit) {
+        return current().grid().nearest(latitude, longitude, radiusMetres, limit);
+    }
+
+    // This method returns the best rated parks whose name, a word of whose name, or whose postcode starts with the
+    // prefix, as ids and names only
+    public List<ParkSuggestionResponse> suggest(String prefix, int limit) {
+        return current().suggestions().suggest(prefix, limit);
+    }
+
+    // This method loads every park from the database into a new snapshot
+    public synchronized void reload() {
+        List<ParksResponse> parks = readTransaction.execute(status -> parkRepository.findAll().stream()
+                .map(ParkCatalog::toResponse)
+                .toList());
+        snapshot = Snapshot.of(parks == null ? List.of() : parks);
+        logger.info("Loaded {} parks into the catalog", snapshot.parks().size());
+    }
+
+    // This method brings one park up to date after it has been written, by reading it back from the database. A
+    // park that is no longer there is removed. Writes are applied one at a time, so the last one always wins.
+    public synchronized void refresh(long parkId) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // The park is read with all the others on first use
+            return;
+        }
+
+        Optional<ParksResponse> park = readTransaction.execute(status ->
+                parkRepository.findById((int) parkId).map(ParkCatalog::toResponse));
+        List<ParksResponse> parks = new ArrayList<>(current.parks());
+        int position = Collections.binarySearch(parks, ParksResponse.builder().id(parkId).build(), BY_ID);
+        ParksResponse previous = position >= 0 ? parks.get(position) : null;
+        ParksResponse next = park != null ? park.orElse(null) : null;
+        if (next != null) {
+            if (position >= 0) {
+                parks.set(position, next);
+            } else {
+                parks.add(-position - 1, next);
+            }
+        } else if (position >= 0) {
+            parks.remove(position);
+        }
+        // The suggestions keep the best parks at every node, so they are built again rather than patched
+        snapshot = Snapshot.of(parks, current.grid().with(previous, next), current.search().with(previous, next),
+                ParkSuggestTrie.of(parks));
+    }
+
+    // This method copies a park into the form sent to the app. The lists are copied out of the Hibernate
+    // collections, so the snapshot does not keep the entity or its session alive.
+    static ParksResponse toResponse(ParkModel parkModel) {
+        ParksResponse response = new ParksResponse();
+        response.setId(parkModel.getId());
+        response.setName(parkModel.getName());
+        response.setImageUrl(parkModel.getImageUrl());
+        response.setRating(parkModel.getRating());
+        response.setReviewCount(parkModel.getReviewCount());
+        response.setAddress(parkModel.getAddress());
+        response.setLatitude(parkModel.getLatitude());
+        response.setLongitude(parkModel.getLongitude());
+        response.setPostcode(parkModel.getPostcode());
+        response.setDescription(parkModel.getDescription());
+        response.setOpeningHours(parkModel.getOpeningHours());
+        response.setParkWebsite(parkModel.getParkWebsite());
+        response.setActive(parkModel.isActive());
+        response.setCreatedAt(parkModel.getCreatedAt());
+        response.setUpdatedAt(parkModel.getUpdatedAt());
+        response.setAccessibility(copy(parkModel.getAccessibility()));
+        response.setChildrenFeatures(copy(parkModel.getChildrenFeatures()));
+        response.setNotices(copy(parkModel.getNotices()));
+        return response;
+    }
+
+    // The snapshot is loaded on first use, and the lock makes sure a write waiting on it is applied afterwards
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static List<String> copy(List<String> values) {
+        return values == null ? null : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    // The element collections are loaded lazily, so parks are read inside a read-only transaction
+    private static TransactionOperations readOnly(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    // The parks ordered by id, looked up by id, placed on a grid by location, indexed by the words they contain and
+    // by the prefixes of their names and postcodes. The responses in it are shared by every request and must not be
+    // modified.
+    private record Snapshot(List<ParksResponse> parks, Map<Long, ParksResponse> byId, ParkGrid grid,
+                            ParkSearchIndex search, ParkSuggestTrie suggestions) {
+
+        private static Snapshot of(List<ParksResponse> parks) {
+            return of(parks, ParkGrid.of(parks), ParkSearchIndex.of(parks), ParkSuggestTrie.of(parks));
+        }
+
+        private static Snapshot of(List<ParksResponse> parks, ParkGrid grid, ParkSearchIndex search,
+                                   ParkSuggestTrie suggestions) {
+            List<ParksResponse> ordered = new ArrayList<>(parks);
+            ordered.sort(BY_ID);
+            Map<Long, ParksResponse> byId = new HashMap<>(ordered.size() * 2);
+            for (ParksResponse park : ordered) {
+                byId.put(park.getId(), park);
+            }
+            return new Snapshot(Collections.unmodifiableList(ordered), Collections.unmodifiableMap(byId), grid,
+                    search, suggestions);
+        }
+    }
+}
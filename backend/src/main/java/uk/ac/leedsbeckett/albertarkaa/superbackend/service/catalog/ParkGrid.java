@@ -0,0 +1,225 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+// This class indexes parks by location on a grid of cells, each holding the coordinates of its parks in primitive
+// arrays. It is immutable: a write returns a new grid that shares every cell except the ones it changed, so the
+// catalog snapshot can be updated without placing every park again.
+final class ParkGrid {
+
+    // The size of a grid cell in degrees, about 1.1 km north to south
+    private static final double CELL_DEGREES = 0.01;
+
+    private static final Comparator<NearbyParkResponse> NEAREST_FIRST = Comparator
+            .comparingDouble(NearbyParkResponse::getDistance)
+            .thenComparing(nearby -> nearby.getPark().getId(), Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Map<Long, Cell> cells;
+
+    // The occupied rows and columns, past which a search can stop looking
+    private final int minRow;
+    private final int maxRow;
+    private final int minColumn;
+    private final int maxColumn;
+
+    private ParkGrid(Map<Long, Cell> cells) {
+        this.cells = cells;
+        int rowLow = Integer.MAX_VALUE, rowHigh = Integer.MIN_VALUE;
+        int columnLow = Integer.MAX_VALUE, columnHigh = Integer.MIN_VALUE;
+        for (long key : cells.keySet()) {
+            rowLow = Math.min(rowLow, row(key));
+            rowHigh = Math.max(rowHigh, row(key));
+            columnLow = Math.min(columnLow, column(key));
+            columnHigh = Math.max(columnHigh, column(key));
+        }
+        this.minRow = rowLow;
+        this.maxRow = rowHigh;
+        this.minColumn = columnLow;
+        this.maxColumn = columnHigh;
+    }
+
+    static ParkGrid of(Collection<ParksResponse> parks) {
+        Map<Long, List<ParksResponse>> members = new HashMap<>();
+        for (ParksResponse park : parks) {
+            members.computeIfAbsent(key(park), key -> new ArrayList<>()).add(park);
+        }
+        Map<Long, Cell> cells = new HashMap<>(members.size() * 2);
+        members.forEach((key, cellParks) -> cells.put(key, Cell.of(cellParks)));
+        return new ParkGrid(cells);
+    }
+
+    // This method returns a grid with one park taken out and another put in, either of which may be null. Only
+    // the cells they are in are copied.
+    ParkGrid with(ParksResponse removed, ParksResponse added) {
+        Map<Long, Cell> next = new HashMap<>(cells);
+        if (removed != null) {
+            long key = key(removed);
+            Cell cell = next.get(key);
+            if (cell != null) {
+                Cell remaining = cell.without(removed.getId());
+                if (remaining == null) {
+                    next.remove(key);
+                } else {
+                    next.put(key, remaining);
+                }
+            }
+        }
+        if (added != null) {
+            next.merge(key(added), Cell.of(List.of(added)), Cell::plus);
+        }
+        return new ParkGrid(next);
+    }
+
+    // This method returns up to limit parks within the radius, nearest first. Cells are searched in rings around
+    // the location until no unsearched cell can hold a nearer park. When the rings would cover more cells than
+    // are occupied, the remaining occupied cells are searched directly instead.
+    List<NearbyParkResponse> nearest(double latitude, double longitude, double radiusMetres, int limit) {
+        if (limit <= 0 || cells.isEmpty()) {
+            return List.of();
+        }
+
+        PriorityQueue<NearbyParkResponse> best = new PriorityQueue<>(limit + 1, NEAREST_FIRST.reversed());
+        int row = row(latitude);
+        int column = column(longitude);
+        int lastRing = Math.max(Math.max(Math.abs(row - minRow), Math.abs(row - maxRow)),
+                Math.max(Math.abs(column - minColumn), Math.abs(column - maxColumn)));
+
+        int searched = 0;
+        int ring = 0;
+        for (; ring <= lastRing; ring++) {
+            double closest = ringDistance(latitude, ring);
+            if (closest > radiusMetres || (best.size() == limit && closest > best.peek().getDistance())) {
+                return sorted(best);
+            }
+            int ringCells = ring == 0 ? 1 : 8 * ring;
+            if (searched + ringCells > cells.size()) {
+                break;
+            }
+            searched += ringCells;
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edge = r == row - ring || r == row + ring;
+                int step = edge || ring == 0 ? 1 : 2 * ring;
+                for (int c = column - ring; c <= column + ring; c += step) {
+                    search(cells.get(key(r, c)), latitude, longitude, radiusMetres, limit, best);
+                }
+            }
+        }
+
+        if (ring <= lastRing) {
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                int distance = Math.max(Math.abs(row(entry.getKey()) - row),
+                        Math.abs(column(entry.getKey()) - column));
+                if (distance >= ring) {
+                    search(entry.getValue(), latitude, longitude, radiusMetres, limit, best);
+                }
+            }
+        }
+        return sorted(best);
+    }
+
+    private static void search(Cell cell, double latitude, double longitude, double radiusMetres, int limit,
+                               PriorityQueue<NearbyParkResponse> best) {
+        if (cell == null) {
+            return;
+        }
+        for (int index = 0; index < cell.parks().length; index++) {
+            double distance = GeoDistance.haversineMetres(latitude, longitude, cell.latitudes()[index],
+                    cell.longitudes()[index]);
+            if (distance > radiusMetres || (best.size() == limit && distance >= best.peek().getDistance())) {
+                continue;
+            }
+            best.add(new NearbyParkResponse(distance, cell.parks()[index]));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+    }
+
+    private static List<NearbyParkResponse> sorted(PriorityQueue<NearbyParkResponse> best) {
+        List<NearbyParkResponse> results = new ArrayList<>(best);
+        results.sort(NEAREST_FIRST);
+        return results;
+    }
+
+    // The least distance from a location to any point in a cell the given number of rings away. Such a point is
+    // at least ring - 1 whole cells away north to south or east to west, and cells are narrowest east to west at
+    // the highest latitude the ring reaches.
+    private static double ringDistance(double latitude, int ring) {
+        if (ring <= 1) {
+            return 0;
+        }
+        double span = Math.toRadians((ring - 1) * CELL_DEGREES);
+        double highest = Math.toRadians(Math.min(90, Math.abs(latitude) + (ring + 1) * CELL_DEGREES));
+        double northSouth = GeoDistance.EARTH_RADIUS_METRES * span;
+        double eastWest = 2 * GeoDistance.EARTH_RADIUS_METRES * Math.cos(highest)
+                * Math.sin(Math.min(span, Math.PI) / 2);
+        return Math.min(northSouth, eastWest);
+    }
+
+    private static long key(ParksResponse park) {
+        return key(row(park.getLatitude()), column(park.getLongitude()));
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int column(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int column(long key) {
+        return (int) key;
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+
+    // The parks placed in one cell, with their coordinates in the same order
+    private record Cell(double[] latitudes, double[] longitudes, ParksResponse[] parks) {
+
+        private static Cell of(List<ParksResponse> parks) {
+            double[] latitudes = new double[parks.size()];
+            double[] longitudes = new double[parks.size()];
+            for (int index = 0; index < parks.size(); index++) {
+                latitudes[index] = parks.get(index).getLatitude();
+                longitudes[index] = parks.get(index).getLongitude();
+            }
+            return new Cell(latitudes, longitudes, parks.toArray(ParksResponse[]::new));
+        }
+
+        private Cell plus(Cell other) {
+            List<ParksResponse> combined = new ArrayList<>(Arrays.asList(parks));
+            combined.addAll(Arrays.asList(other.parks));
+            return of(combined);
+        }
+
+        // Returns null when the cell is left empty
+        private Cell without(Long parkId) {
+            List<ParksResponse> remaining = new ArrayList<>(parks.length);
+            for (ParksResponse park : parks) {
+                if (!Objects.equals(park.getId(), parkId)) {
+                    remaining.add(park);
+                }
+            }
+            return remaining.isEmpty() ? null : of(remaining);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+// This class is an inverted index of the words in the name, postcode, address and description of every park. Words
+// are case-folded and stripped of accents. A query word matches the same word, then words it is the start of, then,
+// when neither is found, words sharing enough trigrams with it to be a likely typo. Like ParkGrid it is immutable,
+// and a write returns a new index that only rewrites the entries of the words the park had or has.
+final class ParkSearchIndex {
+
+    // How much a word counts for in each field
+    private static final float NAME_WEIGHT = 4;
+    private static final float POSTCODE_WEIGHT = 3;
+    private static final float ADDRESS_WEIGHT = 2;
+    private static final float DESCRIPTION_WEIGHT = 1;
+
+    // How much a match on the start of a word, or a likely typo, counts for against a match on the whole word
+    private static final float PREFIX_FACTOR = 0.7f;
+    private static final float TYPO_FACTOR = 0.5f;
+
+    // The least trigram similarity for a typo match, the same as the pg_trgm default, and how many words a query
+    // word may stand for by prefix or by typo
+    private static final double TYPO_SIMILARITY = 0.3;
+    private static final int MAX_EXPANSIONS = 20;
+
+    // The most words of a query that are searched for
+    private static final int MAX_QUERY_WORDS = 16;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // The parks each word is found in, the words in order for prefix matches, and the words containing each trigram
+    private final Map<String, Posting[]> postings;
+    private final String[] words;
+    private final Map<String, String[]> trigrams;
+    private final int parkCount;
+
+    private ParkSearchIndex(Map<String, Posting[]> postings, String[] words, Map<String, String[]> trigrams,
+                            int parkCount) {
+        this.postings = postings;
+        this.words = words;
+        this.trigrams = trigrams;
+        this.parkCount = parkCount;
+    }
+
+    static ParkSearchIndex of(Collection<ParksResponse> parks) {
+        Map<String, List<Posting>> found = new HashMap<>();
+        for (ParksResponse park : parks) {
+            weights(park).forEach((word, weight) ->
+                    found.computeIfAbsent(word, key -> new ArrayList<>()).add(new Posting(park, weight)));
+        }
+        Map<String, Posting[]> postings = new HashMap<>(found.size() * 2);
+        found.forEach((word, list) -> postings.put(word, list.toArray(Posting[]::new)));
+
+        String[] words = postings.keySet().toArray(String[]::new);
+        Arrays.sort(words);
+
+        Map<String, List<String>> byTrigram = new HashMap<>();
+        for (String word : words) {
+            for (String trigram : trigrams(word)) {
+                byTrigram.computeIfAbsent(trigram, key -> new ArrayList<>()).add(word);
+            }
+        }
+        Map<String, String[]> trigrams = new HashMap<>(byTrigram.size() * 2);
+        byTrigram.forEach((trigram, list) -> trigrams.put(trigram, list.toArray(String[]::new)));
+        return new ParkSearchIndex(postings, words, trigrams, parks.size());
+    }
+
+    // This method returns an index with one park taken out and another put in, either of which may be null
+    ParkSearchIndex with(ParksResponse removed, ParksResponse added) {
+        Map<String, Posting[]> nextPostings = new HashMap<>(postings);
+        Set<String> dropped = new TreeSet<>();
+        Set<String> introduced = new TreeSet<>();
+
+        if (removed != null) {
+            for (String word : weights(removed).keySet()) {
+                Posting[] remaining = Arrays.stream(nextPostings.getOrDefault(word, new Posting[0]))
+                        .filter(posting -> !Objects.equals(posting.park().getId(), removed.getId()))
+                        .toArray(Posting[]::new);
+                if (remaining.length == 0) {
+                    nextPostings.remove(word);
+                    dropped.add(word);
+                } else {
+                    nextPostings.put(word, remaining);
+                }
+            }
+        }
+        if (added != null) {
+            weights(added).forEach((word, weight) -> {
+                Posting[] existing = nextPostings.get(word);
+                if (existing == null) {
+                    nextPostings.put(word, new Posting[]{new Posting(added, weight)});
+                    if (!dropped.remove(word)) {
+                        introduced.add(word);
+                    }
+                } else {
+                    Posting[] grown = Arrays.copyOf(existing, existing.length + 1);
+                    grown[existing.length] = new Posting(added, weight);
+                    nextPostings.put(word, grown);
+                }
+            });
+        }
+        int nextCount = parkCount - (removed != null ? 1 : 0) + (added != null ? 1 : 0);
+        if (dropped.isEmpty() && introduced.isEmpty()) {
+            return new ParkSearchIndex(nextPostings, words, trigrams, nextCount);
+        }
+
+        Set<String> nextWords = new TreeSet<>(Arrays.asList(words));
+        nextWords.removeAll(dropped);
+        nextWords.addAll(introduced);
+
+        Map<String, String[]> nextTrigrams = new HashMap<>(trigrams);
+        for (String word : dropped) {
+            for (String trigram : trigrams(word)) {
+                String[] remaining = Arrays.stream(nextTrigrams.getOrDefault(trigram, new String[0]))
+                        .filter(other -> !other.equals(word))
+                        .toArray(String[]::new);
+                if (remaining.length == 0) {
+                    nextTrigrams.remove(trigram);
+                } else {
+                    nextTrigrams.put(trigram, remaining);
+                }
+            }
+        }
+        for (String word : introduced) {
+            for (String trigram : trigrams(word)) {
+                String[] existing = nextTrigrams.getOrDefault(trigram, new String[0]);
+                String[] grown = Arrays.copyOf(existing, existing.length + 1);
+                grown[existing.length] = word;
+                nextTrigrams.put(trigram, grown);
+            }
+        }
+        return new ParkSearchIndex(nextPostings, nextWords.toArray(String[]::new), nextTrigrams, nextCount);
+    }
+
+    // This method returns up to limit parks matching the query, best first. Parks matching more of the query words
+    // come first, then those with the higher score, and then the better rated and more reviewed.
+    List<ParksResponse> search(String query, int limit) {
+        List<String> queryWords = new ArrayList<>(new LinkedHashSet<>(words(query)));
+        if (queryWords.size() > MAX_QUERY_WORDS) {
+            queryWords = queryWords.subList(0, MAX_QUERY_WORDS);
+        }
+        if (queryWords.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Long, Hit> hits = new HashMap<>();
+        for (int index = 0; index < queryWords.size(); index++) {
+            long bit = 1L << index;
+            expand(queryWords.get(index)).forEach((word, factor) -> {
+                Posting[] matches = postings.get(word);
+                // Words found in fewer parks tell them apart better
+                double rarity = Math.log(1 + (double) parkCount / matches.length);
+                for (Posting posting : matches) {
+                    Hit hit = hits.computeIfAbsent(posting.park().getId(), id -> new Hit(posting.park()));
+                    hit.words |= bit;
+                    hit.score += factor * posting.weight() * rarity;
+                }
+            });
+        }
+
+        return hits.values().stream()
+                .sorted(Comparator.comparingInt((Hit hit) -> Long.bitCount(hit.words)).reversed()
+                        .thenComparing(Comparator.comparingDouble((Hit hit) -> hit.score).reversed())
+                        .thenComparing(hit -> hit.park.getRating(), Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(hit -> hit.park.getReviewCount(),
+                                Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(hit -> hit.park.getId(), Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(limit)
+                .map(hit -> hit.park)
+                .toList();
+    }
+
+    // This method returns the indexed words a query word stands for, with how much each counts for
+    private Map<String, Float> expand(String queryWord) {
+        Map<String, Float> matches = new LinkedHashMap<>();
+        if (postings.containsKey(queryWord)) {
+            matches.put(queryWord, 1f);
+        }
+
+        int position = Arrays.binarySearch(words, queryWord);
+        for (int index = position >= 0 ? position + 1 : -position - 1;
+             index < words.length && words[index].startsWith(queryWord) && matches.size() < MAX_EXPANSIONS;
+             index++) {
+            matches.put(words[index], PREFIX_FACTOR);
+        }
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        // Neither the word nor a longer one was found, so it may be misspelt
+        Set<String> queryTrigrams = trigrams(queryWord);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String word : trigrams.getOrDefault(trigram, new String[0])) {
+                shared.merge(word, 1, Integer::sum);
+            }
+        }
+        shared.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), (double) entry.getValue()
+                        / (queryTrigrams.size() + trigrams(entry.getKey()).size() - entry.getValue())))
+                .filter(entry -> entry.getValue() >= TYPO_SIMILARITY)
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(MAX_EXPANSIONS)
+                .forEach(entry -> matches.put(entry.getKey(), (float) (TYPO_FACTOR * entry.getValue())));
+        return matches;
+    }
+
+    // This method returns the words of a park with their weight, the sum of the weights of the fields they are in.
+    // A postcode is also indexed without its space, so that "LS82HH" finds "LS8 2HH".
+    private static Map<String, Float> weights(ParksResponse park) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, words(park.getName()), NAME_WEIGHT);
+        List<String> postcode = new ArrayList<>(words(park.getPostcode()));
+        if (postcode.size() > 1) {
+            postcode.add(String.join("", postcode));
+        }
+        addField(weights, postcode, POSTCODE_WEIGHT);
+        addField(weights, words(park.getAddress()), ADDRESS_WEIGHT);
+        addField(weights, words(park.getDescription()), DESCRIPTION_WEIGHT);
+        return weights;
+    }
+
+    private static void addField(Map<String, Float> weights, List<String> fieldWords, float weight) {
+        for (String word : new LinkedHashSet<>(fieldWords)) {
+            weights.merge(word, weight, Float::sum);
+        }
+    }
+
+    // This method splits text into lower case words without accents, leaving out single letters
+    static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : fold(text).split(" ")) {
+            if (word.length() > 1 || (word.length() == 1 && Character.isDigit(word.charAt(0)))) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // This method folds text to lower case without accents, with any run of other characters as one space. The
+    // suggestions fold text with it too, so that they match the same words as search.
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return SEPARATORS.matcher(folded).replaceAll(" ");
+    }
+
+    // The trigrams of a word padded as pg_trgm does, with two spaces in front and one behind
+    private static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int index = 0; index + 3 <= padded.length(); index++) {
+            trigrams.add(padded.substring(index, index + 3));
+        }
+        return trigrams;
+    }
+
+    // A park a word is found in, and the weight of the word in it
+    private record Posting(ParksResponse park, float weight) {
+    }
+
+    // A park matched by a query, the query words it matched and its score so far
+    private static final class Hit {
+
+        private final ParksResponse park;
+        private long words;
+        private double score;
+
+        private Hit(ParksResponse park) {
+            this.park = park;
+        }
+    }
+}
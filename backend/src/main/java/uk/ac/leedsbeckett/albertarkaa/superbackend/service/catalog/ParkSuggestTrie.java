@@ -0,0 +1,232 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkSuggestionResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// This class answers type-ahead suggestions from a path-compressed trie over park names, every later word of a name
+// and postcodes. Each node keeps the best parks below it, by rating then number of reviews, so a lookup only walks
+// down the prefix. The nodes are held in parallel arrays, with the children of a node next to each other in order.
+final class ParkSuggestTrie {
+
+    // How many parks each node keeps
+    static final int TOP_K = 10;
+
+    // How many words into a name suggestions may start, so that long names do not add many keys
+    private static final int MAX_NAME_WORDS = 8;
+
+    private static final Comparator<ParksResponse> BEST_FIRST = Comparator
+            .comparing(ParksResponse::getRating, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ParksResponse::getReviewCount, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ParksResponse::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    // The label of the edge into each node, its first child and number of children, and its best parks as ranks
+    private final String[] edges;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[][] top;
+
+    // The suggestion of each park, in rank order
+    private final ParkSuggestionResponse[] ranked;
+
+    private ParkSuggestTrie(String[] edges, int[] firstChild, int[] childCount, int[][] top,
+                            ParkSuggestionResponse[] ranked) {
+        this.edges = edges;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.top = top;
+        this.ranked = ranked;
+    }
+
+    static ParkSuggestTrie of(Collection<ParksResponse> parks) {
+        List<ParksResponse> best = new ArrayList<>(parks);
+        best.sort(BEST_FIRST);
+        ParkSuggestionResponse[] ranked = new ParkSuggestionResponse[best.size()];
+        List<Key> keys = new ArrayList<>();
+        for (int rank = 0; rank < best.size(); rank++) {
+            ParksResponse park = best.get(rank);
+            ranked[rank] = new ParkSuggestionResponse(park.getId(), park.getName());
+            for (String key : keys(park)) {
+                keys.add(new Key(key, rank));
+            }
+        }
+        keys.sort(Comparator.comparing(Key::text).thenComparingInt(Key::rank));
+        return build(keys, ranked);
+    }
+
+    // This method returns the best parks with a name, a word of a name or a postcode starting with the prefix
+    List<ParkSuggestionResponse> suggest(String prefix, int limit) {
+        String key = normalise(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        int node = 0;
+        int matched = 0;
+        while (matched < key.length()) {
+            node = child(node, key.charAt(matched));
+            if (node < 0) {
+                return List.of();
+            }
+            String edge = edges[node];
+            int length = Math.min(edge.length(), key.length() - matched);
+            if (!key.regionMatches(matched, edge, 0, length)) {
+                return List.of();
+            }
+            matched += length;
+        }
+
+        int[] ranks = top[node];
+        List<ParkSuggestionResponse> suggestions = new ArrayList<>(Math.min(limit, ranks.length));
+        for (int index = 0; index < ranks.length && index < limit; index++) {
+            suggestions.add(ranked[ranks[index]]);
+        }
+        return suggestions;
+    }
+
+    // The children of a node are in order of the first letter of their edge, so they are searched by halves
+    private int child(int node, char letter) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char first = edges[middle].charAt(0);
+            if (first < letter) {
+                low = middle + 1;
+            } else if (first > letter) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // This method builds the trie breadth first from the sorted keys, so that the children of each node are
+    // allocated together. A node covers the keys in a range that share its prefix, and the edge into it runs to the
+    // longest prefix they all share. The best parks are then filled in from the last node back to the root.
+    private static ParkSuggestTrie build(List<Key> keys, ParkSuggestionResponse[] ranked) {
+        int capacity = Math.max(16, keys.size() * 2 + 1);
+        String[] edges = new String[capacity];
+        int[] firstChild = new int[capacity];
+        int[] childCount = new int[capacity];
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int[] depth = new int[capacity];
+
+        edges[0] = "";
+        to[0] = keys.size();
+        int count = 1;
+        for (int node = 0; node < count; node++) {
+            int start = from[node];
+            int end = to[node];
+            int position = start;
+            while (position < end && keys.get(position).text().length() == depth[node]) {
+                position++;
+            }
+
+            firstChild[node] = count;
+            while (position < end) {
+                char letter = keys.get(position).text().charAt(depth[node]);
+                int next = position;
+                while (next < end && keys.get(next).text().charAt(depth[node]) == letter) {
+                    next++;
+                }
+                if (count == edges.length) {
+                    int grown = edges.length * 2;
+                    edges = Arrays.copyOf(edges, grown);
+                    firstChild = Arrays.copyOf(firstChild, grown);
+                    childCount = Arrays.copyOf(childCount, grown);
+                    from = Arrays.copyOf(from, grown);
+                    to = Arrays.copyOf(to, grown);
+                    depth = Arrays.copyOf(depth, grown);
+                }
+                String first = keys.get(position).text();
+                int shared = commonPrefix(first, keys.get(next - 1).text());
+                edges[count] = first.substring(depth[node], shared);
+                from[count] = position;
+                to[count] = next;
+                depth[count] = shared;
+                count++;
+                position = next;
+            }
+            childCount[node] = count - firstChild[node];
+        }
+
+        int[][] top = new int[count][];
+        for (int node = count - 1; node >= 0; node--) {
+            // The keys ending at the node are in rank order, so only the first TOP_K of them can be among the best
+            int[] candidates = new int[TOP_K * (1 + childCount[node])];
+            int size = 0;
+            for (int index = from[node]; index < to[node] && keys.get(index).text().length() == depth[node]
+                    && size < TOP_K; index++) {
+                candidates[size++] = keys.get(index).rank();
+            }
+            for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                System.arraycopy(top[child], 0, candidates, size, top[child].length);
+                size += top[child].length;
+            }
+            top[node] = best(Arrays.copyOf(candidates, size));
+        }
+
+        return new ParkSuggestTrie(Arrays.copyOf(edges, count), Arrays.copyOf(firstChild, count),
+                Arrays.copyOf(childCount, count), top, ranked);
+    }
+
+    // The lowest distinct ranks, since one park can be reached through several keys below a node
+    private static int[] best(int[] candidates) {
+        Arrays.sort(candidates);
+        int[] best = new int[Math.min(TOP_K, candidates.length)];
+        int size = 0;
+        for (int index = 0; index < candidates.length && size < best.length; index++) {
+            if (size == 0 || best[size - 1] != candidates[index]) {
+                best[size++] = candidates[index];
+            }
+        }
+        return size == best.length ? best : Arrays.copyOf(best, size);
+    }
+
+    private static int commonPrefix(String first, String last) {
+        int length = Math.min(first.length(), last.length());
+        int index = 0;
+        while (index < length && first.charAt(index) == last.charAt(index)) {
+            index++;
+        }
+        return index;
+    }
+
+    // The keys of a park: its name from each of its first words on, and its postcode with and without the space
+    private static List<String> keys(ParksResponse park) {
+        List<String> keys = new ArrayList<>();
+        String name = normalise(park.getName()).strip();
+        for (int start = 0, word = 0; start >= 0 && word < MAX_NAME_WORDS; word++) {
+            if (start < name.length()) {
+                keys.add(name.substring(start));
+            }
+            int space = name.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        String postcode = normalise(park.getPostcode()).strip();
+        if (!postcode.isEmpty()) {
+            keys.add(postcode);
+            if (postcode.indexOf(' ') >= 0) {
+                keys.add(postcode.replace(" ", ""));
+            }
+        }
+        return keys;
+    }
+
+    // This method folds text as search does. A trailing space is kept, since it means the last word is complete.
+    private static String normalise(String text) {
+        return ParkSearchIndex.fold(text).stripLeading();
+    }
+
+    // A key and the rank of the park it leads to
+    private record Key(String text, int rank) {
+    }
+}
@@ -0,0 +1,261 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ProxyEndpoint;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+// This class keeps the weather and air quality readings of every geohash tile that the proxy fetches, so that views
+// over time (the current conditions, the next hours, the coming days, the trend of the last day) are answered from
+// memory. Observations are kept in three tiers of increasing bucket size, and the latest forecast is kept as well.
+public class ConditionsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConditionsStore.class);
+
+    // The metrics of each series, in the order of the arrays in TimeSeries
+    public static final List<String> WEATHER_METRICS = List.of("temp_c", "feelslike_c", "humidity", "wind_kph",
+            "precip_mm", "uv", "cloud");
+    public static final List<String> HOURLY_FORECAST_METRICS = List.of("temp_c", "feelslike_c", "chance_of_rain",
+            "precip_mm", "wind_kph", "uv", "condition_code");
+    public static final List<String> DAILY_FORECAST_METRICS = List.of("maxtemp_c", "mintemp_c", "avgtemp_c",
+            "totalprecip_mm", "daily_chance_of_rain", "uv", "condition_code");
+    public static final List<String> AIR_QUALITY_METRICS = List.of("aqi", "pm25", "pm10", "no2", "o3");
+
+    private static final long HOUR = 3600;
+    private static final long DAY = 86400;
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    private final int rawSamples;
+    private final int hourlyBuckets;
+    private final int dailyBuckets;
+
+    // Tiles that no one has asked about for a while are dropped, and the number of tiles is capped
+    private final Cache<String, WeatherSeries> weather;
+    private final Cache<String, Observations> airQuality;
+
+    @Autowired
+    public ConditionsStore(Environment environment, ObjectMapper objectMapper) {
+        this(environment, objectMapper, Clock.systemUTC());
+    }
+
+    ConditionsStore(Environment environment, ObjectMapper objectMapper, Clock clock) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.rawSamples = environment.getProperty("conditions.store.raw-samples", Integer.class, 288);
+        this.hourlyBuckets = environment.getProperty("conditions.store.hourly-buckets", Integer.class, 168);
+        this.dailyBuckets = environment.getProperty("conditions.store.daily-buckets", Integer.class, 90);
+        long maximumTiles = environment.getProperty("conditions.store.maximum-tiles", Long.class, 2000L);
+        Duration idle = environment.getProperty("conditions.store.expire-after-access", Duration.class,
+                Duration.ofDays(7));
+        this.weather = Caffeine.newBuilder().maximumSize(maximumTiles).expireAfterAccess(idle).build();
+        this.airQuality = Caffeine.newBuilder().maximumSize(maximumTiles).expireAfterAccess(idle).build();
+    }
+
+    // This method records the readings in an upstream body of a tile-keyed endpoint. A body that cannot be read is
+    // logged and ignored, so recording can never fail the request that fetched it.
+    public void record(ProxyEndpoint endpoint, String geohash, String body) {
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            switch (endpoint) {
+                case WEATHER -> recordWeather(geohash, root);
+                case AIR_QUALITY -> recordAirQuality(geohash, root);
+                default -> {
+                    // Only weather and air quality are kept over time
+                }
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Could not record {} readings for {}: {}", endpoint.getPropertyName(), geohash,
+                    e.getMessage());
+        }
+    }
+
+    // This method returns the weather series of a tile if it was recorded within the given age
+    public Optional<WeatherSeries> weather(String geohash, Duration maxAge) {
+        return Optional.ofNullable(weather.getIfPresent(geohash))
+                .filter(series -> isRecent(series.recordedAt, maxAge));
+    }
+
+    // This method returns the air quality series of a tile if it was recorded within the given age
+    public Optional<Observations> airQuality(String geohash, Duration maxAge) {
+        return Optional.ofNullable(airQuality.getIfPresent(geohash))
+                .filter(series -> isRecent(series.recordedAt, maxAge));
+    }
+
+    // This method records a WeatherAPI forecast response, in its full or compact form
+    private void recordWeather(String geohash, JsonNode root) {
+        WeatherSeries series = weather.get(geohash, key -> new WeatherSeries(newObservations(WEATHER_METRICS)));
+        JsonNode current = root.path("current");
+        if (current.isObject()) {
+            long time = current.path("last_updated_epoch").asLong(clock.instant().getEpochSecond());
+            series.observed.add(time, sample(current, WEATHER_METRICS));
+        }
+
+        // The compact form lists the coming hours on their own, the full form lists every hour of every day
+        List<JsonNode> hours = new ArrayList<>();
+        if (root.has("hours")) {
+            root.path("hours").forEach(hours::add);
+        } else {
+            root.path("forecast").path("forecastday").forEach(day -> day.path("hour").forEach(hours::add));
+        }
+        if (!hours.isEmpty()) {
+            TimeSeries hourly = new TimeSeries(HOURLY_FORECAST_METRICS.size(), hours.size(), HOUR);
+            for (JsonNode hour : hours) {
+                hourly.add(hour.path("time_epoch").asLong(), forecastSample(hour, HOURLY_FORECAST_METRICS));
+            }
+            series.hourlyForecast = hourly;
+        }
+
+        JsonNode days = root.path("forecast").path("forecastday");
+        if (!days.isEmpty()) {
+            TimeSeries daily = new TimeSeries(DAILY_FORECAST_METRICS.size(), days.size(), DAY);
+            for (JsonNode day : days) {
+                daily.add(day.path("date_epoch").asLong(), forecastSample(day.path("day"), DAILY_FORECAST_METRICS));
+            }
+            series.dailyForecast = daily;
+        }
+        series.recordedAt = clock.millis();
+    }
+
+    // This method records a WAQI feed response, whose readings are the individual air quality indexes of the station
+    private void recordAirQuality(String geohash, JsonNode root) {
+        JsonNode data = root.path("data");
+        if (!"ok".equals(root.path("status").asText()) || !data.isObject()) {
+            return;
+        }
+        Observations series = airQuality.get(geohash, key -> newObservations(AIR_QUALITY_METRICS));
+        float[] sample = new float[AIR_QUALITY_METRICS.size()];
+        sample[0] = number(data.path("aqi"));
+        for (int metric = 1; metric < sample.length; metric++) {
+            sample[metric] = number(data.path("iaqi").path(AIR_QUALITY_METRICS.get(metric)).path("v"));
+        }
+        series.add(observedAt(data.path("time").path("iso").asText(null)), sample);
+        series.recordedAt = clock.millis();
+    }
+
+    private long observedAt(String iso) {
+        if (iso != null) {
+            try {
+                return OffsetDateTime.parse(iso).toEpochSecond();
+            } catch (DateTimeParseException e) {
+                logger.debug("Unreadable air quality time {}", iso);
+            }
+        }
+        return clock.instant().getEpochSecond();
+    }
+
+    private Observations newObservations(List<String> metrics) {
+        return new Observations(metrics.size(), rawSamples, hourlyBuckets, dailyBuckets);
+    }
+
+    private boolean isRecent(long recordedAt, Duration maxAge) {
+        return clock.millis() - recordedAt <= maxAge.toMillis();
+    }
+
+    private static float[] sample(JsonNode node, List<String> metrics) {
+        float[] sample = new float[metrics.size()];
+        for (int metric = 0; metric < sample.length; metric++) {
+            sample[metric] = number(node.path(metrics.get(metric)));
+        }
+        return sample;
+    }
+
+    // The forecast metrics end with the condition code, which is nested in a condition object
+    private static float[] forecastSample(JsonNode node, List<String> metrics) {
+        float[] sample = sample(node, metrics);
+        sample[metrics.size() - 1] = number(node.path("condition").path("code"));
+        return sample;
+    }
+
+    // WAQI reports "-" for a value the station does not measure
+    private static float number(JsonNode value) {
+        return value.isNumber() ? value.floatValue() : Float.NaN;
+    }
+
+    // The observations of one tile at three granularities, all fed with every sample
+    public static final class Observations {
+
+        private final TimeSeries raw;
+        private final TimeSeries hourly;
+        private final TimeSeries daily;
+        private volatile long recordedAt;
+
+        // The observation time of the latest sample added
+        private long observedAt = Long.MIN_VALUE;
+
+        private Observations(int metrics, int rawSamples, int hourlyBuckets, int dailyBuckets) {
+            this.raw = new TimeSeries(metrics, rawSamples, 1);
+            this.hourly = new TimeSeries(metrics, hourlyBuckets, HOUR);
+            this.daily = new TimeSeries(metrics, dailyBuckets, DAY);
+        }
+
+        // A sample that is not newer than the latest one is skipped. The same response can be read again, from the
+        // proxy cache or an upstream that has not updated yet, and counting it twice would weigh the averages.
+        private synchronized void add(long epochSecond, float[] sample) {
+            if (epochSecond <= observedAt) {
+                return;
+            }
+            observedAt = epochSecond;
+            raw.add(epochSecond, sample);
+            hourly.add(epochSecond, sample);
+            daily.add(epochSecond, sample);
+        }
+
+        // Every sample as it was read
+        public TimeSeries raw() {
+            return raw;
+        }
+
+        // Hourly averages
+        public TimeSeries hourly() {
+            return hourly;
+        }
+
+        // Daily averages
+        public TimeSeries daily() {
+            return daily;
+        }
+    }
+
+    // The weather of one tile: the observed conditions and the latest hourly and daily forecasts
+    public static final class WeatherSeries {
+
+        private final Observations observed;
+        private volatile TimeSeries hourlyForecast;
+        private volatile TimeSeries dailyForecast;
+        private volatile long recordedAt;
+
+        private WeatherSeries(Observations observed) {
+            this.observed = observed;
+        }
+
+        public Observations observed() {
+            return observed;
+        }
+
+        public Optional<TimeSeries> hourlyForecast() {
+            return Optional.ofNullable(hourlyForecast);
+        }
+
+        public Optional<TimeSeries> dailyForecast() {
+            return Optional.ofNullable(dailyForecast);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions;
+
+import java.util.Optional;
+
+// This enum lists the views over time that the conditions store can answer for a park
+public enum ConditionsView {
+    // The latest observed weather and air quality
+    CURRENT("current", 1),
+    // The hourly forecast from the current hour on
+    HOURLY("hourly", 6),
+    // The daily forecast from today on
+    DAILY("daily", 7),
+    // Hourly averages of the air quality readings over the last hours
+    AQI_TREND("aqi-trend", 24),
+    // Hourly averages of the observed weather over the last hours
+    WEATHER_TREND("weather-trend", 24);
+
+    // The name used for this view in request paths
+    private final String pathName;
+
+    // How many hours, days or readings the view covers when the request does not say
+    private final int defaultLength;
+
+    ConditionsView(String pathName, int defaultLength) {
+        this.pathName = pathName;
+        this.defaultLength = defaultLength;
+    }
+
+    public String getPathName() {
+        return pathName;
+    }
+
+    public int getDefaultLength() {
+        return defaultLength;
+    }
+
+    // This method returns the view with the given path name, e.g. "aqi-trend"
+    public static Optional<ConditionsView> fromPathName(String pathName) {
+        for (ConditionsView view : values()) {
+            if (view.pathName.equals(pathName)) {
+                return Optional.of(view);
+            }
+        }
+        return Optional.empty();
+    }
+}
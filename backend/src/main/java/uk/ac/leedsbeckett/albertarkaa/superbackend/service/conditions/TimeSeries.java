@@ -0,0 +1,126 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions;
+
+// This class keeps the values of a fixed set of metrics over time in primitive arrays used as a ring, so the oldest
+// bucket is overwritten once the series is full. Each bucket holds the average of the samples that fell into it,
+// which is how the hourly and daily tiers are downsampled from the same samples as the raw tier. A missing value is
+// stored as NaN and left out of the average.
+public final class TimeSeries {
+
+    private final long bucketSeconds;
+
+    // The start of each bucket in epoch seconds, and the average and sample count of each metric in it
+    private final long[] times;
+    private final float[][] values;
+    private final int[][] counts;
+
+    // The slot of the newest bucket and the number of buckets in use
+    private int head = -1;
+    private int size;
+
+    public TimeSeries(int metricCount, int capacity, long bucketSeconds) {
+        if (capacity < 1 || bucketSeconds < 1) {
+            throw new IllegalArgumentException("A time series needs at least one bucket of at least one second");
+        }
+        this.bucketSeconds = bucketSeconds;
+        this.times = new long[capacity];
+        this.values = new float[metricCount][capacity];
+        this.counts = new int[metricCount][capacity];
+    }
+
+    // This method adds a sample to the bucket of its time. Samples older than the oldest bucket still held are
+    // dropped, and a sample for a bucket that is not held between older and newer ones starts no new bucket.
+    public synchronized void add(long epochSecond, float[] sample) {
+        long bucket = Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds;
+        int slot;
+        if (size == 0 || bucket > times[head]) {
+            slot = (head + 1) % times.length;
+            head = slot;
+            size = Math.min(size + 1, times.length);
+            times[slot] = bucket;
+            for (int metric = 0; metric < values.length; metric++) {
+                values[metric][slot] = Float.NaN;
+                counts[metric][slot] = 0;
+            }
+        } else {
+            slot = find(bucket);
+            if (slot < 0) {
+                return;
+            }
+        }
+
+        for (int metric = 0; metric < values.length; metric++) {
+            float value = sample[metric];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            int count = ++counts[metric][slot];
+            values[metric][slot] = count == 1 ? value : values[metric][slot] + (value - values[metric][slot]) / count;
+        }
+    }
+
+    // This method returns the buckets that start within [from, to), oldest first
+    public synchronized Slice range(long fromEpochSecond, long toEpochSecond) {
+        int first = size;
+        int last = 0;
+        for (int index = 0; index < size; index++) {
+            long time = times[slot(index)];
+            if (time >= fromEpochSecond && time < toEpochSecond) {
+                first = Math.min(first, index);
+                last = index + 1;
+            }
+        }
+        return copy(first, Math.max(first, last));
+    }
+
+    // This method returns the newest buckets, at most the given number, oldest first
+    public synchronized Slice latest(int count) {
+        return copy(Math.max(0, size - count), size);
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // The slot of the index-th bucket counted from the oldest
+    private int slot(int index) {
+        return (head - size + 1 + index + times.length) % times.length;
+    }
+
+    private int find(long bucket) {
+        for (int index = size - 1; index >= 0; index--) {
+            int slot = slot(index);
+            if (times[slot] == bucket) {
+                return slot;
+            }
+            if (times[slot] < bucket) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private Slice copy(int from, int to) {
+        long[] sliceTimes = new long[to - from];
+        float[][] sliceValues = new float[values.length][to - from];
+        for (int index = from; index < to; index++) {
+            int slot = slot(index);
+            sliceTimes[index - from] = times[slot];
+            for (int metric = 0; metric < values.length; metric++) {
+                sliceValues[metric][index - from] = values[metric][slot];
+            }
+        }
+        return new Slice(sliceTimes, sliceValues);
+    }
+
+    // A copy of some buckets of a series: their start times and, for each metric, their values
+    public record Slice(long[] times, float[][] values) {
+
+        public static Slice empty() {
+            return new Slice(new long[0], new float[0][]);
+        }
+
+        public boolean isEmpty() {
+            return times.length == 0;
+        }
+    }
+}
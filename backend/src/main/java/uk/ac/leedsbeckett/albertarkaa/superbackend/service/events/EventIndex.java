@@ -0,0 +1,190 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.GeoDistance;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+// This class holds the events of the service area in memory, ordered by start time and indexed on a grid by
+// location, with the events near each park worked out up front. It is replaced as a whole on every refresh, so
+// readers always see one consistent snapshot without locking.
+public class EventIndex {
+
+    // The size of a grid cell in degrees, about 1.1 km north to south
+    private static final double CELL_DEGREES = 0.01;
+
+    private static final double METRES_PER_DEGREE = 111_320;
+
+    private final Clock clock;
+
+    private volatile Snapshot snapshot;
+
+    public EventIndex() {
+        this(Clock.systemUTC());
+    }
+
+    EventIndex(Clock clock) {
+        this.clock = clock;
+    }
+
+    // This method reports whether events have been loaded yet
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    // This method replaces the indexed events with PredictHQ events and joins them to the parks within the radius.
+    // Events without a location or start time are left out.
+    public void replace(List<JsonNode> events, List<ParkModel> parks, double parkRadiusMetres) {
+        List<Event> parsed = new ArrayList<>(events.size());
+        for (JsonNode event : events) {
+            parse(event).ifPresent(parsed::add);
+        }
+        parsed.sort(Comparator.comparing(Event::start));
+        Event[] ordered = parsed.toArray(Event[]::new);
+
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int index = 0; index < ordered.length; index++) {
+            cells.computeIfAbsent(cell(ordered[index].latitude(), ordered[index].longitude()), key -> new ArrayList<>())
+                    .add(index);
+        }
+        Map<Long, int[]> grid = new HashMap<>(cells.size() * 2);
+        cells.forEach((key, indexes) -> grid.put(key, indexes.stream().mapToInt(Integer::intValue).toArray()));
+
+        Snapshot next = new Snapshot(ordered, grid, Map.of());
+        Map<Long, int[]> byPark = new HashMap<>(parks.size() * 2);
+        for (ParkModel park : parks) {
+            byPark.put(park.getId(), next.within(park.getLatitude(), park.getLongitude(), parkRadiusMetres));
+        }
+        snapshot = new Snapshot(ordered, grid, byPark);
+    }
+
+    // This method returns the events joined to a park that have not ended yet, soonest first, or nothing when the
+    // park was not active at the last refresh
+    public Optional<List<String>> forPark(long parkId, int limit) {
+        Snapshot current = snapshot;
+        if (current == null || !current.byPark().containsKey(parkId)) {
+            return Optional.empty();
+        }
+        return Optional.of(current.select(current.byPark().get(parkId), limit, clock.instant()));
+    }
+
+    // This method returns the events within a radius of a location that have not ended yet, soonest first
+    public List<String> near(double latitude, double longitude, double radiusMetres, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return List.of();
+        }
+        return current.select(current.within(latitude, longitude, radiusMetres), limit, clock.instant());
+    }
+
+    // This method returns the number of events held, for logging
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.events().length;
+    }
+
+    // This method lays out events in the shape of a PredictHQ events response
+    public static String toResponse(List<String> events) {
+        return "{\"count\":" + events.size() + ",\"results\":[" + String.join(",", events) + "]}";
+    }
+
+    private static Optional<Event> parse(JsonNode event) {
+        JsonNode location = event.path("location");
+        if (!location.path(0).isNumber() || !location.path(1).isNumber()) {
+            return Optional.empty();
+        }
+        Instant start = instant(event.path("start").asText(null));
+        if (start == null) {
+            return Optional.empty();
+        }
+        Instant end = instant(event.path("end").asText(null));
+        // PredictHQ locations are [longitude, latitude]
+        return Optional.of(new Event(start, end == null ? start : end, location.path(1).asDouble(),
+                location.path(0).asDouble(), event.toString()));
+    }
+
+    private static Instant instant(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long cell(double latitude, double longitude) {
+        return key((long) Math.floor(latitude / CELL_DEGREES), (long) Math.floor(longitude / CELL_DEGREES));
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+
+    // An event with the fields that are searched on, and its PredictHQ JSON as it is returned to clients
+    private record Event(Instant start, Instant end, double latitude, double longitude, String json) {
+    }
+
+    // The events ordered by start time, the indexes of the events in each grid cell, and the indexes of the events
+    // joined to each park
+    private record Snapshot(Event[] events, Map<Long, int[]> grid, Map<Long, int[]> byPark) {
+
+        // This method returns the indexes of the events within a radius, in start order
+        private int[] within(double latitude, double longitude, double radiusMetres) {
+            int latCells = (int) Math.ceil(radiusMetres / METRES_PER_DEGREE / CELL_DEGREES);
+            int lonCells = (int) Math.ceil(radiusMetres
+                    / (METRES_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)))) / CELL_DEGREES);
+            long row = (long) Math.floor(latitude / CELL_DEGREES);
+            long column = (long) Math.floor(longitude / CELL_DEGREES);
+
+            int[] found = new int[16];
+            int count = 0;
+            for (long r = row - latCells; r <= row + latCells; r++) {
+                for (long c = column - lonCells; c <= column + lonCells; c++) {
+                    int[] indexes = grid.get(key(r, c));
+                    if (indexes == null) {
+                        continue;
+                    }
+                    for (int index : indexes) {
+                        Event event = events[index];
+                        if (GeoDistance.haversineMetres(latitude, longitude, event.latitude(), event.longitude())
+                                <= radiusMetres) {
+                            if (count == found.length) {
+                                found = Arrays.copyOf(found, count * 2);
+                            }
+                            found[count++] = index;
+                        }
+                    }
+                }
+            }
+            int[] result = Arrays.copyOf(found, count);
+            Arrays.sort(result);
+            return result;
+        }
+
+        // This method returns the JSON of the first events that have not ended by the given time
+        private List<String> select(int[] indexes, int limit, Instant now) {
+            List<String> selected = new ArrayList<>(Math.min(limit, indexes.length));
+            for (int index = 0; index < indexes.length && selected.size() < limit; index++) {
+                if (!events[indexes[index]].end().isBefore(now)) {
+                    selected.add(events[indexes[index]].json());
+                }
+            }
+            return selected;
+        }
+    }
+}
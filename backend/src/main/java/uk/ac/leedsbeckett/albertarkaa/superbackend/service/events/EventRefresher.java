@@ -0,0 +1,97 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ApiProxyService;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.QuotaLane;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "events.refresh.enabled", havingValue = "true", matchIfMissing = true)
+// This class loads the events of the whole service area from PredictHQ into the events index on a fixed schedule,
+// so PredictHQ traffic is a fixed background cost however many clients ask for events
+public class EventRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventRefresher.class);
+
+    private final ApiProxyService apiProxyService;
+    private final ParkRepository parkRepository;
+    private final EventIndex eventIndex;
+    private final ObjectMapper objectMapper;
+
+    // The centre and radius of the service area, Leeds by default
+    @Value("${events.area.latitude:53.7995746}")
+    private double areaLatitude;
+
+    @Value("${events.area.longitude:-1.5471022}")
+    private double areaLongitude;
+
+    @Value("${events.area.radius-km:15}")
+    private double areaRadiusKm;
+
+    // How many days ahead events are loaded for
+    @Value("${events.horizon-days:7}")
+    private int horizonDays;
+
+    // Events are loaded a page at a time, up to a limit to bound the calls of one refresh
+    @Value("${events.refresh.page-size:200}")
+    private int pageSize;
+
+    @Value("${events.refresh.max-pages:5}")
+    private int maxPages;
+
+    // Events within this distance of a park are listed for the park, 1.5 miles by default
+    @Value("${events.park-radius:2414}")
+    private double parkRadius;
+
+    // This method replaces the indexed events with the events of the service area. If any page fails the previous
+    // events are kept until the next run.
+    @Scheduled(initialDelayString = "${events.refresh.initial-delay:PT5S}",
+            fixedDelayString = "${events.refresh.interval:PT30M}")
+    public void refresh() {
+        LocalDate today = LocalDate.now();
+        List<JsonNode> events;
+        try {
+            events = Flux.range(0, maxPages)
+                    .concatMap(page -> apiProxyService.fetchEventsPage(areaLatitude, areaLongitude, areaRadiusKm,
+                                    today, today.plusDays(horizonDays), page * pageSize, pageSize)
+                            .map(this::results))
+                    .takeUntil(results -> results.size() < pageSize)
+                    .flatMapIterable(results -> results)
+                    .collectList()
+                    .contextWrite(QuotaLane.BACKGROUND.asContext())
+                    .block();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh events, keeping the {} events already loaded: {}", eventIndex.size(),
+                    e.getMessage());
+            return;
+        }
+
+        eventIndex.replace(events, parkRepository.findByActiveTrue(), parkRadius);
+        logger.info("Loaded {} events for the service area", eventIndex.size());
+    }
+
+    private List<JsonNode> results(String body) {
+        try {
+            List<JsonNode> results = new ArrayList<>();
+            objectMapper.readTree(body).path("results").forEach(results::add);
+            return results;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the events response", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.events;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog.ParkCatalog;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ApiProxyService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+// This is a service class that answers events queries from the events index. Until the index has been loaded,
+// requests are passed on to PredictHQ as before.
+public class EventService {
+
+    private final EventIndex eventIndex;
+    private final ApiProxyService apiProxyService;
+    private final ParkCatalog parkCatalog;
+
+    // Where events are listed for when the request gives no park or location, 1.5 miles around Leeds by default
+    @Value("${events.area.latitude:53.7995746}")
+    private double defaultLatitude;
+
+    @Value("${events.area.longitude:-1.5471022}")
+    private double defaultLongitude;
+
+    @Value("${events.default-radius:2414}")
+    private double defaultRadius;
+
+    // Events within this distance of a park are listed for the park
+    @Value("${events.park-radius:2414}")
+    private double parkRadius;
+
+    // The largest radius a request may ask for is the service area's, as events are only loaded for that area
+    @Value("${events.area.radius-km:15}")
+    private double areaRadiusKm;
+
+    // The most events one request may ask for
+    private static final int MAX_LIMIT = 100;
+
+    // This method returns the events near a park, near a location (radius in metres), or in the default area, in
+    // the shape of a PredictHQ events response. Unknown parks are answered with 404.
+    public Mono<ResponseEntity<StreamingResponseBody>> getEvents(Long parkId, Double latitude, Double longitude,
+                                                                 Double radius, int limit) {
+        if (!eventIndex.isReady()) {
+            return apiProxyService.streamEvents();
+        }
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        List<String> events;
+        if (parkId != null) {
+            Optional<List<String>> parkEvents = eventsForPark(parkId, boundedLimit);
+            if (parkEvents.isEmpty()) {
+                return Mono.just(ResponseEntity.notFound().build());
+            }
+            events = parkEvents.get();
+        } else if (latitude != null && longitude != null) {
+            double searchRadius = radius == null ? parkRadius : Math.max(0, Math.min(radius, areaRadiusKm * 1000));
+            events = eventIndex.near(latitude, longitude, searchRadius, boundedLimit);
+        } else {
+            events = eventIndex.near(defaultLatitude, defaultLongitude, defaultRadius, boundedLimit);
+        }
+
+        byte[] body = EventIndex.toResponse(events).getBytes(StandardCharsets.UTF_8);
+        return Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .body(outputStream -> outputStream.write(body)));
+    }
+
+    // This method returns the events near a park as a PredictHQ events response, for the park conditions. Until the
+    // index is ready the area's events are fetched instead, and an upstream error is passed on so that the caller
+    // can report the section as unavailable rather than as having no events.
+    public Mono<String> getEventsForPark(long parkId, double latitude, double longitude, int limit) {
+        if (!eventIndex.isReady()) {
+            return apiProxyService.getEventsBody();
+        }
+        List<String> events = eventIndex.forPark(parkId, limit)
+                .orElseGet(() -> eventIndex.near(latitude, longitude, parkRadius, limit));
+        return Mono.just(EventIndex.toResponse(events));
+    }
+
+    // Parks activated since the last refresh are not joined yet, so their events are searched by location
+    private Optional<List<String>> eventsForPark(long parkId, int limit) {
+        Optional<List<String>> joined = eventIndex.forPark(parkId, limit);
+        if (joined.isPresent()) {
+            return joined;
+        }
+        return parkCatalog.get(parkId)
+                .map(park -> eventIndex.near(park.getLatitude(), park.getLongitude(), parkRadius, limit));
+    }
+}
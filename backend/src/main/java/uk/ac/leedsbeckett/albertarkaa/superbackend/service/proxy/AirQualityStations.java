@@ -0,0 +1,239 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.GeoDistance;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+// This class keeps the latest reading of every WAQI station that the proxy has fetched, indexed by location, so that
+// the air quality at a new location can be estimated from the stations around it. WAQI answers a geo query with the
+// nearest station, so across a city most locations resolve to the same few stations and need no upstream call once
+// those stations have been read.
+public class AirQualityStations {
+
+    private static final Logger logger = LoggerFactory.getLogger(AirQualityStations.class);
+
+    // The readings that are estimated, the overall index followed by the individual pollutant indexes
+    private static final List<String> METRICS = List.of("aqi", "pm25", "pm10", "no2", "o3");
+
+    // The size of a grid cell in degrees, about 5.5 km north to south
+    private static final double CELL_DEGREES = 0.05;
+
+    private static final double METRES_PER_DEGREE = 111_320;
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    // How the air quality is estimated: off, from the nearest station, or by inverse-distance weighting
+    private final EstimationMode mode;
+
+    // How old a reading may be and still be used for an estimate
+    private final Duration maxAge;
+
+    // Stations further away than this are not used for an estimate
+    private final double maxDistance;
+
+    // How many stations must be within range for the area to count as covered
+    private final int minStations;
+
+    // A station this close counts as covering the location on its own, as WAQI would answer with it anyway
+    private final double exactDistance;
+
+    // Inverse-distance weighting works with distances no shorter than this, so a station next to the location
+    // does not get all the weight
+    private static final double MIN_WEIGHT_DISTANCE = 50;
+
+    // The stations by WAQI station index, and the indexes of the stations in each grid cell
+    private final Map<Integer, Station> stations = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Integer, Station>> grid = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AirQualityStations(Environment environment, ObjectMapper objectMapper) {
+        this(environment, objectMapper, Clock.systemUTC());
+    }
+
+    AirQualityStations(Environment environment, ObjectMapper objectMapper, Clock clock) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.mode = EstimationMode.valueOf(
+                environment.getProperty("proxy.air-quality.estimation.mode", "off").toUpperCase());
+        this.maxAge = environment.getProperty("proxy.air-quality.estimation.max-age", Duration.class,
+                Duration.ofMinutes(30));
+        this.maxDistance = environment.getProperty("proxy.air-quality.estimation.max-distance", Double.class, 5000.0);
+        this.minStations = environment.getProperty("proxy.air-quality.estimation.min-stations", Integer.class, 2);
+        this.exactDistance = environment.getProperty("proxy.air-quality.estimation.exact-distance", Double.class,
+                500.0);
+    }
+
+    // This method records the station reading in a WAQI feed response, in its full or compact form. Responses
+    // without a station location are ignored.
+    public void record(String body) {
+        JsonNode data;
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            if (!"ok".equals(root.path("status").asText())) {
+                return;
+            }
+            data = root.path("data");
+        } catch (JsonProcessingException e) {
+            logger.debug("Could not read an air quality response: {}", e.getOriginalMessage());
+            return;
+        }
+        JsonNode geo = data.path("city").path("geo");
+        if (!data.path("idx").canConvertToInt() || !geo.path(0).isNumber() || !geo.path(1).isNumber()) {
+            return;
+        }
+
+        double[] values = new double[METRICS.size()];
+        values[0] = number(data.path("aqi"));
+        for (int metric = 1; metric < values.length; metric++) {
+            values[metric] = number(data.path("iaqi").path(METRICS.get(metric)).path("v"));
+        }
+        Station station = new Station(data.path("idx").asInt(), data.path("city").path("name").asText(""),
+                geo.path(0).asDouble(), geo.path(1).asDouble(), values, data.path("dominentpol").asText(null),
+                data.path("time"), clock.millis());
+
+        Station previous = stations.put(station.index(), station);
+        if (previous != null && cell(previous.latitude(), previous.longitude())
+                != cell(station.latitude(), station.longitude())) {
+            grid.getOrDefault(cell(previous.latitude(), previous.longitude()), Map.of()).remove(previous.index());
+        }
+        grid.computeIfAbsent(cell(station.latitude(), station.longitude()), key -> new ConcurrentHashMap<>())
+                .put(station.index(), station);
+    }
+
+    // This method returns an estimate of the air quality at a location in the shape of a WAQI feed response, or
+    // nothing when estimation is off or not enough fresh stations are known around the location
+    public Optional<String> estimate(double latitude, double longitude) {
+        if (mode == EstimationMode.OFF) {
+            return Optional.empty();
+        }
+        List<Nearby> nearby = freshStationsAround(latitude, longitude);
+        if (nearby.isEmpty() || (nearby.size() < minStations && nearby.get(0).distance() > exactDistance)) {
+            return Optional.empty();
+        }
+
+        List<Nearby> used = mode == EstimationMode.NEAREST ? nearby.subList(0, 1) : nearby;
+        double[] values = new double[METRICS.size()];
+        for (int metric = 0; metric < values.length; metric++) {
+            values[metric] = weightedAverage(used, metric);
+        }
+        logger.debug("Estimated air quality at {},{} from {} stations", latitude, longitude, used.size());
+        return Optional.of(toResponse(latitude, longitude, values, used));
+    }
+
+    // This method returns the stations with a fresh reading within range of the location, nearest first
+    private List<Nearby> freshStationsAround(double latitude, double longitude) {
+        long oldest = clock.millis() - maxAge.toMillis();
+        int latCells = (int) Math.ceil(maxDistance / METRES_PER_DEGREE / CELL_DEGREES);
+        int lonCells = (int) Math.ceil(maxDistance
+                / (METRES_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)))) / CELL_DEGREES);
+        long row = (long) Math.floor(latitude / CELL_DEGREES);
+        long column = (long) Math.floor(longitude / CELL_DEGREES);
+
+        List<Nearby> nearby = new ArrayList<>();
+        for (long r = row - latCells; r <= row + latCells; r++) {
+            for (long c = column - lonCells; c <= column + lonCells; c++) {
+                for (Station station : grid.getOrDefault(key(r, c), Map.of()).values()) {
+                    double distance = GeoDistance.haversineMetres(latitude, longitude, station.latitude(),
+                            station.longitude());
+                    if (station.fetchedAt() >= oldest && distance <= maxDistance) {
+                        nearby.add(new Nearby(station, distance));
+                    }
+                }
+            }
+        }
+        nearby.sort(Comparator.comparingDouble(Nearby::distance));
+        return nearby;
+    }
+
+    // Stations that do not measure a pollutant are left out of its average
+    private static double weightedAverage(List<Nearby> stations, int metric) {
+        double weighted = 0;
+        double weights = 0;
+        for (Nearby nearby : stations) {
+            double value = nearby.station().values()[metric];
+            if (!Double.isNaN(value)) {
+                double weight = 1 / Math.pow(Math.max(nearby.distance(), MIN_WEIGHT_DISTANCE), 2);
+                weighted += value * weight;
+                weights += weight;
+            }
+        }
+        return weights == 0 ? Double.NaN : weighted / weights;
+    }
+
+    // The estimate has the fields of a WAQI response that the app reads, the time of the nearest reading, and the
+    // stations it was made from
+    private String toResponse(double latitude, double longitude, double[] values, List<Nearby> used) {
+        Station nearest = used.get(0).station();
+        ObjectNode root = objectMapper.createObjectNode().put("status", "ok");
+        ObjectNode data = root.putObject("data");
+        if (Double.isNaN(values[0])) {
+            data.put("aqi", "-");
+        } else {
+            data.put("aqi", Math.round(values[0]));
+        }
+        data.put("estimated", true);
+        if (nearest.dominantPollutant() != null) {
+            data.put("dominentpol", nearest.dominantPollutant());
+        }
+        ObjectNode iaqi = data.putObject("iaqi");
+        for (int metric = 1; metric < values.length; metric++) {
+            if (!Double.isNaN(values[metric])) {
+                iaqi.putObject(METRICS.get(metric)).put("v", Math.round(values[metric] * 10) / 10.0);
+            }
+        }
+        ObjectNode city = data.putObject("city").put("name", used.size() == 1 ? nearest.name()
+                : "Estimated from " + used.size() + " stations");
+        city.putArray("geo").add(latitude).add(longitude);
+        data.set("time", nearest.time());
+        ArrayNode stations = data.putArray("stations");
+        used.forEach(nearby -> stations.addObject()
+                .put("idx", nearby.station().index())
+                .put("name", nearby.station().name())
+                .put("distance", Math.round(nearby.distance())));
+        return root.toString();
+    }
+
+    private static long cell(double latitude, double longitude) {
+        return key((long) Math.floor(latitude / CELL_DEGREES), (long) Math.floor(longitude / CELL_DEGREES));
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+
+    // WAQI reports "-" for a value the station does not measure
+    private static double number(JsonNode value) {
+        return value.isNumber() ? value.doubleValue() : Double.NaN;
+    }
+
+    private enum EstimationMode {
+        OFF, NEAREST, IDW
+    }
+
+    // The latest reading of a station and when it was fetched
+    private record Station(int index, String name, double latitude, double longitude, double[] values,
+                           String dominantPollutant, JsonNode time, long fetchedAt) {
+    }
+
+    private record Nearby(Station station, double distance) {
+    }
+}
@@ -0,0 +1,458 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions.ConditionsStore;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.routing.WalkingRouter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+@Service
+@RequiredArgsConstructor
+// This is a service class that calls the external APIs behind the proxy endpoints and caches their responses
+public class ApiProxyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiProxyService.class);
+
+    // The PredictHQ event categories that are shown in the app
+    private static final String EVENT_CATEGORIES = "expos,concerts,festivals,performing-arts,community,sports,public-holidays,observances,daylight-savings,airport-delays,severe-weather,disasters,terror,health-warnings";
+
+    // WebClient is a non-blocking, reactive HTTP client that is part of the Spring WebFlux module and is used to make HTTP requests
+    private final WebClient webClient;
+    private final ProxyCacheService proxyCacheService;
+    private final GeoQuantizer geoQuantizer;
+    private final UpstreamResilience upstreamResilience;
+    private final UpstreamHedging upstreamHedging;
+
+    // The API keys are handed out per request by the quota manager, which tracks how much quota each one has left
+    private final UpstreamQuota upstreamQuota;
+    private final SpeechAudioStore speechAudioStore;
+    private final RouteSnapper routeSnapper;
+    private final WalkingRouter walkingRouter;
+    private final ResponseProjector responseProjector;
+
+    // Weather and air quality readings are kept over time as they are fetched
+    private final ConditionsStore conditionsStore;
+
+    // Air quality station readings, used to estimate the air quality of tiles near stations that are already known
+    private final AirQualityStations airQualityStations;
+    private final ObjectMapper objectMapper;
+
+    // Profiles whose routes are the same in both directions, so that a cached route can be walked backwards
+    @Value("${proxy.route.symmetric-profiles:foot-walking,foot-hiking,wheelchair}")
+    private Set<String> symmetricProfiles;
+
+    // This method returns the weather forecast for the geohash tile containing a location, from the cache when possible
+    public Mono<ResponseEntity<String>> getWeather(double lat, double lon) {
+        return getWeather(lat, lon, false);
+    }
+
+    // This method returns the weather forecast, or its compact form (see ResponseProjector) when asked for
+    public Mono<ResponseEntity<String>> getWeather(double lat, double lon, boolean compact) {
+        return compact ? getCompactForTile(ProxyEndpoint.WEATHER, lat, lon)
+                : getForTile(ProxyEndpoint.WEATHER, lat, lon);
+    }
+
+    // This method returns the air quality for the geohash tile containing a location, from the cache when possible.
+    // When estimation is enabled, a tile near stations that were read recently is answered from their readings.
+    public Mono<ResponseEntity<String>> getAirQuality(double lat, double lon) {
+        return getAirQuality(lat, lon, false);
+    }
+
+    // This method returns the air quality, or its compact form (see ResponseProjector) when asked for
+    public Mono<ResponseEntity<String>> getAirQuality(double lat, double lon, boolean compact) {
+        return compact ? getCompactForTile(ProxyEndpoint.AIR_QUALITY, lat, lon)
+                : getForTile(ProxyEndpoint.AIR_QUALITY, lat, lon);
+    }
+
+    // This method returns the directions between two "longitude,latitude" locations, from the cache when possible.
+    // Both ends are snapped to a nearby park or a small tile, and for symmetric profiles a route cached for the
+    // opposite direction is turned around instead of fetching a new one. Walks that the local path graph covers
+    // are routed in-process and only fall back to OpenRouteService when the graph has no answer.
+    public Mono<ResponseEntity<String>> getDirections(String start, String end, String profile) {
+        double[] startPoint;
+        double[] endPoint;
+        try {
+            startPoint = RouteSnapper.parse(start);
+            endPoint = RouteSnapper.parse(end);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+
+        if (walkingRouter.supports(profile)) {
+            Optional<CompactRoute> local = walkingRouter.route(startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
+            if (local.isPresent()) {
+                return Mono.just(ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(local.get().toGeoJson(objectMapper)));
+            }
+        }
+
+        RoutePoint from = routeSnapper.snap(startPoint[0], startPoint[1]);
+        RoutePoint to = routeSnapper.snap(endPoint[0], endPoint[1]);
+
+        // Both directions of a symmetric route share the entry of the direction whose keys sort first
+        boolean reverse = symmetricProfiles.contains(profile) && from.key().compareTo(to.key()) > 0;
+        Mono<CompactRoute> route = !reverse ? getRoute(from, to, profile)
+                : getRoute(to, from, profile).flatMap(canonical -> canonical.isReversible()
+                        ? Mono.just(canonical.reversed())
+                        : getRoute(from, to, profile));
+
+        return route
+                .map(compact -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(compact.toGeoJson(objectMapper)))
+                .onErrorResume(this::handleError);
+    }
+
+    // This method returns the points of interest around the geohash tile containing a location, from the cache when possible
+    public Mono<ResponseEntity<String>> getPointsOfInterest(double latitude, double longitude) {
+        return getForTile(ProxyEndpoint.POINTS_OF_INTEREST, latitude, longitude);
+    }
+
+    // This method returns the cached or upstream body for the tile containing a location. Unlike the methods above,
+    // upstream errors are passed on to the caller so that it can decide how to degrade.
+    public Mono<String> getBodyForTile(ProxyEndpoint endpoint, double lat, double lon) {
+        GeoTile tile = geoQuantizer.tileFor(endpoint, lat, lon);
+        return proxyCacheService.getOrFetch(endpoint, tile.geohash(), () -> fetchForTile(endpoint, tile));
+    }
+
+    // This method refreshes the cached response for the tile containing a location if it would expire within the
+    // lead time. It is used to warm the cache in the background, so errors are left for the caller to log.
+    public Mono<Void> prefetch(ProxyEndpoint endpoint, double lat, double lon, Duration lead) {
+        GeoTile tile = geoQuantizer.tileFor(endpoint, lat, lon);
+        return proxyCacheService.refreshAhead(endpoint, tile.geohash(), lead, () -> fetchForTile(endpoint, tile));
+    }
+
+    // This method returns the text-to-speech conversion of an instruction, serving only the requested byte range
+    // when the request has a Range header. Clips are served from the speech audio store and downloaded from VoiceRSS
+    // into it on a miss. With the store disabled, the VoiceRSS response is streamed straight to the client.
+    public Mono<ResponseEntity<StreamingResponseBody>> speak(String instruction, String rangeHeader) {
+        Mono<ResponseEntity<StreamingResponseBody>> response = speechAudioStore.isEnabled()
+                ? openSpeechClip(instruction)
+                        .map(clip -> PassthroughResponses.file(clip.channel(), clip.contentType(), clip.length(),
+                                rangeHeader))
+                : fetchSpeech(instruction).map(upstream -> PassthroughResponses.streamRange(upstream, rangeHeader));
+        return response
+                .onErrorResume(e -> {
+                    // Log the error and return an empty audio file
+                    logger.error("Error in text-to-speech conversion: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.ok().contentLength(0).build());
+                });
+    }
+
+    // This method returns the stored clip for an instruction, downloading it from VoiceRSS when it is not stored yet
+    public Mono<StoredClip> getSpeechClip(String instruction) {
+        return speechAudioStore.getOrFetch(instruction, () -> fetchSpeech(instruction));
+    }
+
+    // This method returns the stored clip for an instruction with its file open for reading, downloading it first
+    // when it is not stored yet, so that it can still be read if it is evicted before the response is written
+    public Mono<OpenClip> openSpeechClip(String instruction) {
+        return speechAudioStore.open(instruction, () -> fetchSpeech(instruction));
+    }
+
+    // This method streams the events data from the PredictHQ API to the client without decoding it
+    public Mono<ResponseEntity<StreamingResponseBody>> streamEvents() {
+        return callUpstream(UpstreamProvider.PREDICT_HQ, apiKey -> eventsRequest(apiKey).toEntityFlux(DataBuffer.class))
+                .map(PassthroughResponses::stream)
+                .onErrorResume(e -> {
+                    // Log the error and return an empty JSON array
+                    logger.error("Error fetching events: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                            .body(outputStream -> outputStream.write("[]".getBytes(StandardCharsets.UTF_8))));
+                });
+    }
+
+    // This method returns the PredictHQ events for the next 7 days within a 1.5 mile radius of Leeds, UK, from the
+    // cache when possible. Upstream errors are passed on to the caller so that it can decide how to degrade.
+    public Mono<String> getEventsBody() {
+        return proxyCacheService.getOrFetch(ProxyEndpoint.EVENTS, LocalDate.now().toString(), () -> callUpstream(
+                UpstreamProvider.PREDICT_HQ, apiKey -> eventsRequest(apiKey).bodyToMono(String.class)));
+    }
+
+    // This method fetches one page of the events active between two dates within a radius of a location, sorted by
+    // start date. It is used to load the events index, so it is neither cached nor given a fallback.
+    public Mono<String> fetchEventsPage(double lat, double lon, double radiusKm, LocalDate from, LocalDate to,
+                                        int offset, int limit) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        return callUpstream(UpstreamProvider.PREDICT_HQ, apiKey -> webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .scheme("https")
+                        .host("api.predicthq.com")
+                        .path("/v1/events/")
+                        .queryParam("category", EVENT_CATEGORIES)
+                        .queryParam("active.gte", from.format(formatter))
+                        .queryParam("active.lte", to.format(formatter))
+                        .queryParam("state", "active")
+                        .queryParam("sort", "start")
+                        .queryParam("within", radiusKm + "km@" + lat + "," + lon)
+                        .queryParam("offset", offset)
+                        .queryParam("limit", limit)
+                        .build())
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(15)));
+    }
+
+    // This method builds the PredictHQ events request with the given API key
+    private WebClient.ResponseSpec eventsRequest(String apiKey) {
+        // Get the current date and the date 7 days from now
+        LocalDate now = LocalDate.now();
+        LocalDate futureDate = now.plusDays(7);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+        // Build the URI for the PredictHQ API request with the required query parameters and headers for
+        // authentication and content type and make a GET request to fetch the events data for the next 7 days within a 1.5 mile radius of Leeds, UK
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .scheme("https")
+                        .host("api.predicthq.com")
+                        .path("/v1/events/")
+                        .queryParam("category", EVENT_CATEGORIES)
+                        .queryParam("active.gte", now.format(formatter)) // Start date should be today
+                        .queryParam("active.lte", futureDate.format(formatter)) // End date should be 7 days from now
+                        .queryParam("state", "active") // Only active events
+                        .queryParam("sort", "start") // Sort by start date
+                        .queryParam("limit", 5) // Limit to 5 events
+                        .queryParam("saved_location.location_id", "WGr2NwsguUR5RKtD8iGV6Q")  // Leeds coordinates
+                        .build())
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .retrieve();
+    }
+
+    // This method returns the cached or upstream route from one snapped point to another. Routes are cached in
+    // their compact form rather than as the GeoJSON returned upstream.
+    private Mono<CompactRoute> getRoute(RoutePoint origin, RoutePoint destination, String profile) {
+        String key = origin.key() + "-" + destination.key() + "-" + profile;
+        return proxyCacheService.getOrFetch(ProxyEndpoint.DIRECTIONS, key,
+                        () -> fetchDirections(origin.toLonLat(), destination.toLonLat(), profile)
+                                .map(body -> writeJson(CompactRoute.fromGeoJson(readJson(body)))))
+                .map(body -> readJson(body, CompactRoute.class));
+    }
+
+    // This method returns the cached or upstream response for the geohash tile containing a location
+    private Mono<ResponseEntity<String>> getForTile(ProxyEndpoint endpoint, double lat, double lon) {
+        return getBodyForTile(endpoint, lat, lon)
+                .map(ResponseEntity::ok)
+                .onErrorResume(this::handleError);
+    }
+
+    // This method returns the compact form of the cached or upstream response for the geohash tile containing a
+    // location. It is projected from the full response on each request, so both forms share one cache entry, one
+    // upstream call and the entries the cache warmer keeps fresh.
+    private Mono<ResponseEntity<String>> getCompactForTile(ProxyEndpoint endpoint, double lat, double lon) {
+        return getBodyForTile(endpoint, lat, lon)
+                .map(body -> compact(endpoint, body))
+                .map(ResponseEntity::ok)
+                .onErrorResume(this::handleError);
+    }
+
+    // This method projects a full weather or air quality response into its compact form
+    private String compact(ProxyEndpoint endpoint, String body) {
+        InputStream stream = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        return switch (endpoint) {
+            case WEATHER -> responseProjector.weather(stream);
+            case AIR_QUALITY -> responseProjector.airQuality(stream);
+            default -> throw new IllegalArgumentException(endpoint.getPropertyName() + " has no compact form");
+        };
+    }
+
+    // This method calls the upstream API behind a tile-keyed endpoint with the coordinates of the tile centre, and
+    // keeps the readings of a weather or air quality response in the conditions store
+    private Mono<String> fetchForTile(ProxyEndpoint endpoint, GeoTile tile) {
+        Mono<String> body = switch (endpoint) {
+            case WEATHER -> fetchWeather(tile.latitude(), tile.longitude());
+            case AIR_QUALITY -> airQualityStations.estimate(tile.latitude(), tile.longitude())
+                    .map(Mono::just)
+                    .orElseGet(() -> fetchAirQuality(tile.latitude(), tile.longitude())
+                            .doOnNext(airQualityStations::record));
+            case POINTS_OF_INTEREST -> fetchPointsOfInterest(tile.latitude(), tile.longitude());
+            default -> Mono.error(new IllegalArgumentException(endpoint.getPropertyName() + " is not keyed by location"));
+        };
+        return body.doOnNext(fetched -> conditionsStore.record(endpoint, tile.geohash(), fetched));
+    }
+
+    // This method requests the text-to-speech conversion of an instruction from the VoiceRSS API as a stream
+    private Mono<ResponseEntity<Flux<DataBuffer>>> fetchSpeech(String instruction) {
+        return callUpstream(UpstreamProvider.VOICE_RSS, apiKey -> webClient.get()
+                .uri("https://api.voicerss.org/?key={key}&hl={voice}&src={instruction}",
+                        apiKey, SpeechAudioStore.VOICE, instruction)
+                .retrieve()
+                .toEntityFlux(DataBuffer.class));
+    }
+
+    // This method fetches weather data from the WeatherAPI based on the latitude and longitude of a location
+    private Mono<String> fetchWeather(double lat, double lon) {
+        return callUpstream(UpstreamProvider.WEATHER_API, apiKey -> weatherRequest(apiKey, lat, lon)
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(10)));
+    }
+
+    // This method builds the WeatherAPI 7 day forecast request for a location with the given API key
+    private WebClient.ResponseSpec weatherRequest(String apiKey, double lat, double lon) {
+        logger.info("Fetching weather data for lat: {}, lon: {}", lat, lon);
+
+        String cacheKey = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HH"));
+
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .scheme("https")
+                        .host("api.weatherapi.com")
+                        .path("/v1/forecast.json")
+                        .queryParam("key", apiKey)
+                        .queryParam("q", lat + "," + lon)
+                        .queryParam("days", 7)
+                        .queryParam("aqi", "no")
+                        .queryParam("alerts", "no")
+                        .queryParam("cache-buster", cacheKey)
+                        .build())
+                .retrieve();
+    }
+
+    // This method fetches air quality data from the WAQI API based on the latitude and longitude of a location
+    private Mono<String> fetchAirQuality(double lat, double lon) {
+        return callUpstream(UpstreamProvider.WAQI, apiKey -> airQualityRequest(apiKey, lat, lon)
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(10)));
+    }
+
+    // This method builds the WAQI feed request for the station nearest a location with the given API key
+    private WebClient.ResponseSpec airQualityRequest(String apiKey, double lat, double lon) {
+        logger.info("Fetching air quality data for lat: {} and lon: {}", lat, lon);
+        return webClient.get()
+                .uri("https://api.waqi.info/feed/geo:{lat};{lon}/?token={apiKey}",
+                        lat, lon, apiKey)
+                .retrieve();
+    }
+
+    // This method fetches directions data from the OpenRoute API based on the start and end locations and the profile
+    private Mono<String> fetchDirections(String start, String end, String profile) {
+        logger.info("Fetching directions for start: {}, end: {}, profile: {}", start, end, profile);
+
+        return callUpstream(UpstreamProvider.OPENROUTE_SERVICE, apiKey -> webClient.get()
+                .uri(String.format("https://api.openrouteservice.org/v2/directions/%s?api_key=%s&start=%s&end=%s",
+                        profile, apiKey, start, end))
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(15)));
+    }
+
+    // This method fetches points of interest from the OpenRoute API within 500 metres of a location
+    private Mono<String> fetchPointsOfInterest(double latitude, double longitude) {
+        logger.info("Fetching POIs for latitude: {} and longitude: {}", latitude, longitude);
+
+        List<Integer> categories = List.of(191, 564, 518, 601, 583);
+
+        // Create the request body for the POIs API call
+        Map<String, Object> requestBody = Map.of(
+                "request", "pois",
+                "geometry", Map.of(
+                        "geojson", Map.of(
+                                "type", "Point",
+                                "coordinates", List.of(longitude, latitude)
+                        ),
+                        "buffer", 500 // Buffer radius in meters, 500 meters
+                ),
+                "filters", Map.of(
+                        "category_ids", categories
+                )
+        );
+
+        return callUpstream(UpstreamProvider.OPENROUTE_SERVICE, apiKey -> webClient.post()
+                .uri("https://api.openrouteservice.org/pois")
+                .header(HttpHeaders.AUTHORIZATION, apiKey)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(10)));
+    }
+
+    // This method sends a request to an upstream provider through its circuit breaker and bulkhead, hedging it
+    // when hedging is enabled for the provider. Every attempt builds the request with a key from the quota manager.
+    private <T> Mono<T> callUpstream(UpstreamProvider provider, Function<String, Mono<T>> request) {
+        return upstreamHedging.hedge(provider,
+                upstreamResilience.protect(provider, upstreamQuota.withKey(provider, request)));
+    }
+
+    private JsonNode readJson(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the upstream response", e);
+        }
+    }
+
+    private <T> T readJson(String body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the cached " + type.getSimpleName(), e);
+        }
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    // This method handles errors that occur during API calls and returns an appropriate response
+    private Mono<ResponseEntity<String>> handleError(Throwable error) {
+        if (error instanceof WebClientResponseException wcre) {
+            HttpStatus status = (HttpStatus) wcre.getStatusCode();
+            String body = wcre.getResponseBodyAsString();
+            logger.error("API call failed with status {}: {}", status, body, wcre);
+            return Mono.just(ResponseEntity.status(status).body(body));
+        } else if (error instanceof CallNotPermittedException || error instanceof BulkheadFullException) {
+            // The provider's circuit breaker is open or its bulkhead is full, so fail fast without calling it
+            logger.warn("Upstream call rejected: {}", error.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("The upstream service is temporarily unavailable"));
+        } else if (error instanceof QuotaExceededException) {
+            // No API key has quota left, so answer 429 ourselves instead of spending a call on an upstream 429
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body("The upstream service quota is exhausted, please try again later"));
+        } else {
+            logger.error("Unexpected error occurred", error);
+            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("An unexpected error occurred"));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import java.time.Duration;
+
+// The freshness windows for one endpoint's cache: how long an entry is fresh, how long after that it may be
+// served while a background refresh runs, and how long after that it may be served when the upstream call fails
+public record CachePolicy(Duration ttl, Duration staleWhileRevalidate, Duration staleIfError) {
+
+    // How long an entry has to be kept in the cache for any of the windows to use it
+    public Duration retention() {
+        Duration stale = staleWhileRevalidate.compareTo(staleIfError) > 0 ? staleWhileRevalidate : staleIfError;
+        return ttl.plus(stale);
+    }
+}
@@ -0,0 +1,7 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import java.time.Instant;
+
+// An upstream response body that has been fully received, together with the time it was fetched
+public record CachedResponse(String body, Instant fetchedAt) {
+}
@@ -0,0 +1,264 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.Polyline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// This record is the form in which routes are cached: the geometry as an encoded polyline and only the parts of the
+// OpenRouteService response that the app uses. It is several times smaller than the GeoJSON it was built from, and
+// a walking route can be turned around to answer the same trip in the opposite direction.
+public record CompactRoute(
+        @JsonProperty("polyline") String polyline,
+        @JsonProperty("distance") double distance,
+        @JsonProperty("duration") double duration,
+        @JsonProperty("steps") List<Step> steps) {
+
+    // OpenRouteService instruction types, see https://giscience.github.io/openrouteservice/api-reference/endpoints/directions/instruction-types
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int SHARP_LEFT = 2;
+    private static final int SHARP_RIGHT = 3;
+    private static final int SLIGHT_LEFT = 4;
+    private static final int SLIGHT_RIGHT = 5;
+    private static final int STRAIGHT = 6;
+    private static final int ENTER_ROUNDABOUT = 7;
+    private static final int EXIT_ROUNDABOUT = 8;
+    private static final int U_TURN = 9;
+    private static final int GOAL = 10;
+    private static final int DEPART = 11;
+    private static final int KEEP_LEFT = 12;
+    private static final int KEEP_RIGHT = 13;
+
+    // Roundabout exits are counted in the direction of travel, so they cannot be turned around
+    private static final Set<Integer> IRREVERSIBLE_TYPES = Set.of(ENTER_ROUNDABOUT, EXIT_ROUNDABOUT);
+
+    private static final String[] COMPASS = {"north", "northeast", "east", "southeast", "south", "southwest", "west",
+            "northwest"};
+
+    // One instruction of the route, starting at the first of its way points (indexes into the geometry)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Step(
+            @JsonProperty("distance") double distance,
+            @JsonProperty("duration") double duration,
+            @JsonProperty("type") int type,
+            @JsonProperty("instruction") String instruction,
+            @JsonProperty("name") String name,
+            @JsonProperty("way_points") int[] wayPoints,
+            @JsonProperty("exit_number") Integer exitNumber) {
+    }
+
+    // A stretch of a route along one named path, as found by the local router, from one way point to another
+    public record Leg(String name, int fromWayPoint, int toWayPoint, double distance) {
+    }
+
+    // This method builds a route from a line and the legs it is made of, working out the turn at the start of each
+    // leg from the change in bearing and writing instructions in the same style as OpenRouteService
+    public static CompactRoute fromLegs(List<double[]> points, List<Leg> legs, double metresPerSecond) {
+        int last = points.size() - 1;
+        List<Step> steps = new ArrayList<>(legs.size() + 1);
+        double total = 0;
+        for (int index = 0; index < legs.size(); index++) {
+            Leg leg = legs.get(index);
+            int from = leg.fromWayPoint();
+            int type = index == 0 ? DEPART : turnType(bearing(points.get(from - 1), points.get(from)),
+                    bearing(points.get(from), points.get(Math.min(from + 1, last))));
+            String instruction = index == 0
+                    ? departInstruction(points, from, leg.name())
+                    : turnInstruction(type, leg.name());
+            steps.add(new Step(leg.distance(), leg.distance() / metresPerSecond, type, instruction, leg.name(),
+                    new int[]{from, leg.toWayPoint()}, null));
+            total += leg.distance();
+        }
+        steps.add(new Step(0, 0, GOAL, "Arrive at your destination", "-", new int[]{last, last}, null));
+        return new CompactRoute(Polyline.encode(points), total, total / metresPerSecond, steps);
+    }
+
+    // This method builds a compact route from an OpenRouteService GeoJSON directions response. The steps of all
+    // segments are joined, since the way points of every step already index the whole geometry.
+    public static CompactRoute fromGeoJson(JsonNode root) {
+        JsonNode feature = root.path("features").path(0);
+        JsonNode coordinates = feature.path("geometry").path("coordinates");
+        if (!coordinates.isArray() || coordinates.isEmpty()) {
+            throw new IllegalArgumentException("The directions response has no route geometry");
+        }
+
+        List<double[]> points = new ArrayList<>(coordinates.size());
+        for (JsonNode coordinate : coordinates) {
+            points.add(new double[]{coordinate.path(0).asDouble(), coordinate.path(1).asDouble()});
+        }
+
+        List<Step> steps = new ArrayList<>();
+        for (JsonNode segment : feature.path("properties").path("segments")) {
+            for (JsonNode step : segment.path("steps")) {
+                steps.add(new Step(
+                        step.path("distance").asDouble(),
+                        step.path("duration").asDouble(),
+                        step.path("type").asInt(),
+                        step.path("instruction").asText(""),
+                        step.path("name").asText("-"),
+                        new int[]{step.path("way_points").path(0).asInt(), step.path("way_points").path(1).asInt()},
+                        step.has("exit_number") ? step.path("exit_number").asInt() : null));
+            }
+        }
+
+        JsonNode summary = feature.path("properties").path("summary");
+        return new CompactRoute(Polyline.encode(points), summary.path("distance").asDouble(),
+                summary.path("duration").asDouble(), steps);
+    }
+
+    // This method rebuilds the GeoJSON response in the shape returned by OpenRouteService, with the fields the app
+    // reads: the line geometry, one segment with its steps, the summary, the way points and the bounding box
+    public String toGeoJson(ObjectMapper objectMapper) {
+        List<double[]> points = Polyline.decode(polyline);
+
+        ArrayNode coordinates = objectMapper.createArrayNode();
+        double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (double[] point : points) {
+            coordinates.addArray().add(point[0]).add(point[1]);
+            minLon = Math.min(minLon, point[0]);
+            minLat = Math.min(minLat, point[1]);
+            maxLon = Math.max(maxLon, point[0]);
+            maxLat = Math.max(maxLat, point[1]);
+        }
+        ArrayNode bbox = objectMapper.createArrayNode().add(minLon).add(minLat).add(maxLon).add(maxLat);
+
+        ObjectNode segment = objectMapper.createObjectNode()
+                .put("distance", distance)
+                .put("duration", duration);
+        segment.set("steps", objectMapper.valueToTree(steps));
+
+        ObjectNode properties = objectMapper.createObjectNode();
+        properties.putArray("segments").add(segment);
+        properties.putObject("summary").put("distance", distance).put("duration", duration);
+        properties.putArray("way_points").add(0).add(points.size() - 1);
+
+        ObjectNode feature = objectMapper.createObjectNode();
+        feature.set("bbox", bbox);
+        feature.put("type", "Feature");
+        feature.set("properties", properties);
+        ObjectNode geometry = feature.putObject("geometry");
+        geometry.set("coordinates", coordinates);
+        geometry.put("type", "LineString");
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("type", "FeatureCollection");
+        root.set("bbox", bbox);
+        root.putArray("features").add(feature);
+        return root.toString();
+    }
+
+    // This method reports whether the route can be turned around. Routes with roundabouts cannot, and neither can
+    // routes whose steps do not follow the usual depart, turns, arrive pattern.
+    @JsonIgnore
+    public boolean isReversible() {
+        if (steps.size() < 2 || steps.get(0).type() != DEPART || steps.get(steps.size() - 1).type() != GOAL) {
+            return false;
+        }
+        return steps.stream().noneMatch(step -> IRREVERSIBLE_TYPES.contains(step.type()));
+    }
+
+    // This method returns the same route walked in the opposite direction. The geometry is reversed and each step
+    // covers the same stretch of path as before, with the manoeuvre at its start mirrored (a left turn into a street
+    // becomes a right turn out of it) and its instruction rewritten to match.
+    public CompactRoute reversed() {
+        List<double[]> points = new ArrayList<>(Polyline.decode(polyline));
+        Collections.reverse(points);
+        int last = points.size() - 1;
+
+        int legs = steps.size() - 1;
+        List<Step> reversedSteps = new ArrayList<>(steps.size());
+        for (int index = 0; index < legs; index++) {
+            Step leg = steps.get(legs - 1 - index);
+            Step manoeuvre = steps.get(legs - index);
+            int from = last - manoeuvre.wayPoints()[0];
+            int to = last - leg.wayPoints()[0];
+            int type = index == 0 ? DEPART : mirror(manoeuvre.type());
+            String instruction = index == 0
+                    ? departInstruction(points, from, leg.name())
+                    : turnInstruction(type, leg.name());
+            reversedSteps.add(new Step(leg.distance(), leg.duration(), type, instruction, leg.name(),
+                    new int[]{from, to}, null));
+        }
+        reversedSteps.add(new Step(0, 0, GOAL, "Arrive at your destination", "-", new int[]{last, last}, null));
+
+        return new CompactRoute(Polyline.encode(points), distance, duration, reversedSteps);
+    }
+
+    private static int mirror(int type) {
+        return switch (type) {
+            case LEFT -> RIGHT;
+            case RIGHT -> LEFT;
+            case SHARP_LEFT -> SHARP_RIGHT;
+            case SHARP_RIGHT -> SHARP_LEFT;
+            case SLIGHT_LEFT -> SLIGHT_RIGHT;
+            case SLIGHT_RIGHT -> SLIGHT_LEFT;
+            case KEEP_LEFT -> KEEP_RIGHT;
+            case KEEP_RIGHT -> KEEP_LEFT;
+            default -> type;
+        };
+    }
+
+    // This method classifies the change of direction between two bearings, where a clockwise change is a right turn
+    private static int turnType(double incomingBearing, double outgoingBearing) {
+        double change = ((outgoingBearing - incomingBearing) % 360 + 540) % 360 - 180;
+        double angle = Math.abs(change);
+        if (angle < 20) {
+            return STRAIGHT;
+        } else if (angle < 60) {
+            return change < 0 ? SLIGHT_LEFT : SLIGHT_RIGHT;
+        } else if (angle < 120) {
+            return change < 0 ? LEFT : RIGHT;
+        } else if (angle < 170) {
+            return change < 0 ? SHARP_LEFT : SHARP_RIGHT;
+        }
+        return U_TURN;
+    }
+
+    // The initial bearing from one [longitude, latitude] point to another, in degrees clockwise from north
+    private static double bearing(double[] start, double[] next) {
+        double y = Math.sin(Math.toRadians(next[0] - start[0])) * Math.cos(Math.toRadians(next[1]));
+        double x = Math.cos(Math.toRadians(start[1])) * Math.sin(Math.toRadians(next[1]))
+                - Math.sin(Math.toRadians(start[1])) * Math.cos(Math.toRadians(next[1]))
+                * Math.cos(Math.toRadians(next[0] - start[0]));
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    private static String departInstruction(List<double[]> points, int from, String name) {
+        double bearing = bearing(points.get(from), points.get(Math.min(from + 1, points.size() - 1)));
+        String heading = "Head " + COMPASS[(int) Math.round(bearing / 45) % COMPASS.length];
+        return isNamed(name) ? heading + " on " + name : heading;
+    }
+
+    private static String turnInstruction(int type, String name) {
+        String action = switch (type) {
+            case LEFT -> "Turn left";
+            case RIGHT -> "Turn right";
+            case SHARP_LEFT -> "Turn sharp left";
+            case SHARP_RIGHT -> "Turn sharp right";
+            case SLIGHT_LEFT -> "Turn slight left";
+            case SLIGHT_RIGHT -> "Turn slight right";
+            case U_TURN -> "Make a U-turn";
+            case KEEP_LEFT -> "Keep left";
+            case KEEP_RIGHT -> "Keep right";
+            case STRAIGHT -> "Continue straight";
+            default -> "Continue";
+        };
+        return isNamed(name) ? action + " onto " + name : action;
+    }
+
+    // OpenRouteService names unnamed paths "-"
+    private static boolean isNamed(String name) {
+        return name != null && !name.isBlank() && !"-".equals(name);
+    }
+}
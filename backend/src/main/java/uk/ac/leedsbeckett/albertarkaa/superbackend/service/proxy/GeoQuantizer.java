@@ -0,0 +1,39 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.GeoHash;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+// This class snaps coordinates to geohash tiles so that nearby requests share a cache entry and an upstream call
+public class GeoQuantizer {
+
+    private final Map<ProxyEndpoint, Integer> precisions = new EnumMap<>(ProxyEndpoint.class);
+
+    public GeoQuantizer(Environment environment) {
+        for (ProxyEndpoint endpoint : ProxyEndpoint.values()) {
+            int precision = environment.getProperty("proxy.geohash." + endpoint.getPropertyName() + ".precision",
+                    Integer.class, endpoint.getDefaultGeohashPrecision());
+            if (precision < 0 || precision > GeoHash.MAX_PRECISION) {
+                throw new IllegalArgumentException("Invalid geohash precision for " + endpoint.getPropertyName()
+                        + ": " + precision);
+            }
+            precisions.put(endpoint, precision);
+        }
+    }
+
+    // This method returns the tile that the coordinates fall in for the endpoint. When snapping is disabled for the
+    // endpoint the tile is the exact coordinate pair.
+    public GeoTile tileFor(ProxyEndpoint endpoint, double latitude, double longitude) {
+        int precision = precisions.get(endpoint);
+        if (precision == 0) {
+            return new GeoTile(latitude + "," + longitude, latitude, longitude);
+        }
+        String geohash = GeoHash.encode(latitude, longitude, precision);
+        double[] center = GeoHash.decodeCenter(geohash);
+        return new GeoTile(geohash, center[0], center[1]);
+    }
+}
@@ -0,0 +1,5 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+// A geohash tile that a coordinate pair has been snapped to, with the coordinates of the tile centre
+public record GeoTile(String geohash, double latitude, double longitude) {
+}
@@ -0,0 +1,9 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.springframework.http.MediaType;
+
+import java.nio.channels.FileChannel;
+
+// This record holds a clip from the speech audio store whose file is open for reading, with its content type and size
+public record OpenClip(FileChannel channel, MediaType contentType, long length) {
+}
@@ -0,0 +1,210 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// This class turns a streamed upstream response, or a file on disk, into a servlet response that is written to the
+// client piece by piece, so large payloads are never decoded into a String or collected into one byte array
+public final class PassthroughResponses {
+
+    private PassthroughResponses() {
+    }
+
+    // This method streams the whole upstream body, keeping the upstream content type and length
+    public static ResponseEntity<StreamingResponseBody> stream(ResponseEntity<Flux<DataBuffer>> upstream) {
+        return ResponseEntity.status(upstream.getStatusCode())
+                .headers(passthroughHeaders(upstream.getHeaders()))
+                .body(writeTo(upstream.getBody()));
+    }
+
+    // This method streams the part of the upstream body asked for by a single byte range in the Range header. The
+    // bytes before the range are skipped as they arrive and the stream stops at the end of the range. Without a
+    // usable range, or when the upstream length is unknown, the whole body is streamed with 200 as RFC 9110 allows.
+    public static ResponseEntity<StreamingResponseBody> streamRange(ResponseEntity<Flux<DataBuffer>> upstream,
+                                                                    String rangeHeader) {
+        long length = upstream.getHeaders().getContentLength();
+        if (length < 0 || !upstream.getStatusCode().is2xxSuccessful()) {
+            return stream(upstream);
+        }
+
+        // Ranges can only be served when the full length is known up front
+        HttpHeaders headers = passthroughHeaders(upstream.getHeaders());
+        ByteRange range = ByteRange.resolve(rangeHeader, length);
+        if (range == null) {
+            return ResponseEntity.ok().headers(rangeHeaders(headers, null, length)).body(writeTo(upstream.getBody()));
+        }
+        if (!range.isSatisfiable()) {
+            release(upstream.getBody());
+            return notSatisfiable(headers, length);
+        }
+
+        Flux<DataBuffer> body = DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.skipUntilByteCount(upstream.getBody(), range.start()), range.length());
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(rangeHeaders(headers, range, length))
+                .body(writeTo(body));
+    }
+
+    // This method serves a file, or the single byte range of it asked for in the Range header. The bytes go from
+    // the file channel to the response with FileChannel.transferTo, so no byte array is allocated for the file.
+    public static ResponseEntity<StreamingResponseBody> file(Path path, MediaType contentType, long length,
+                                                             String rangeHeader) {
+        return file(() -> FileChannel.open(path, StandardOpenOption.READ), contentType, length, rangeHeader);
+    }
+
+    // This method serves a file that is already open in the same way. The channel is closed once the response has
+    // been written, or straight away when no body is sent.
+    public static ResponseEntity<StreamingResponseBody> file(FileChannel channel, MediaType contentType, long length,
+                                                             String rangeHeader) {
+        ResponseEntity<StreamingResponseBody> response = file(() -> channel, contentType, length, rangeHeader);
+        if (response.getBody() == null) {
+            closeQuietly(channel);
+        }
+        return response;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> file(FileSource source, MediaType contentType, long length,
+                                                              String rangeHeader) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        ByteRange range = ByteRange.resolve(rangeHeader, length);
+        if (range == null) {
+            return ResponseEntity.ok()
+                    .headers(rangeHeaders(headers, null, length))
+                    .body(transfer(source, 0, length));
+        }
+        if (!range.isSatisfiable()) {
+            return notSatisfiable(headers, length);
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(rangeHeaders(headers, range, length))
+                .body(transfer(source, range.start(), range.length()));
+    }
+
+    // This method writes the buffers to the servlet output stream on the MVC async thread, releasing each one once
+    // it has been written. If the client goes away the write fails and the upstream body is cancelled.
+    private static StreamingResponseBody writeTo(Flux<DataBuffer> body) {
+        return outputStream -> {
+            if (body != null) {
+                DataBufferUtils.write(body, outputStream)
+                        .doOnNext(DataBufferUtils::release)
+                        .blockLast();
+            }
+            outputStream.flush();
+        };
+    }
+
+    // This method copies part of a file to the servlet output stream through the file channel
+    private static StreamingResponseBody transfer(FileSource source, long start, long count) {
+        return outputStream -> {
+            try (FileChannel channel = source.open()) {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long position = start;
+                long end = start + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+            outputStream.flush();
+        };
+    }
+
+    // Only the headers that describe the body are passed on, not upstream cookies, caching or connection headers
+    private static HttpHeaders passthroughHeaders(HttpHeaders upstreamHeaders) {
+        HttpHeaders headers = new HttpHeaders();
+        if (upstreamHeaders.getContentType() != null) {
+            headers.setContentType(upstreamHeaders.getContentType());
+        }
+        if (upstreamHeaders.getContentLength() >= 0) {
+            headers.setContentLength(upstreamHeaders.getContentLength());
+        }
+        return headers;
+    }
+
+    private static HttpHeaders rangeHeaders(HttpHeaders headers, ByteRange range, long length) {
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (range == null) {
+            headers.setContentLength(length);
+        } else {
+            headers.setContentLength(range.length());
+            headers.set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + range.start() + "-" + range.end() + "/" + length);
+        }
+        return headers;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> notSatisfiable(HttpHeaders headers, long length) {
+        headers.setContentLength(0);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing was read from the channel, so there is nothing to report
+        }
+    }
+
+    private static void release(Flux<DataBuffer> body) {
+        if (body != null) {
+            body.subscribe(DataBufferUtils::release);
+        }
+    }
+
+    // Where the bytes of a file come from, opened when the response body is written
+    private interface FileSource {
+        FileChannel open() throws IOException;
+    }
+
+    // The inclusive byte positions of a single range within a body of known length
+    private record ByteRange(long start, long end) {
+
+        // Returns null when there is no single, well-formed range to serve
+        private static ByteRange resolve(String rangeHeader, long length) {
+            if (rangeHeader == null || rangeHeader.isBlank()) {
+                return null;
+            }
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (ranges.size() != 1) {
+                return null;
+            }
+            // A range that starts past the end of the body is kept so that it can be answered with 416
+            return new ByteRange(ranges.get(0).getRangeStart(length), ranges.get(0).getRangeEnd(length));
+        }
+
+        private boolean isSatisfiable() {
+            return end >= start;
+        }
+
+        private long length() {
+            return end - start + 1;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.request.proxy.ProxyBatchItem;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ProxyBatchResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+// This is a service class that runs many proxy lookups from one HTTP request against the cache and upstream APIs
+public class ProxyBatchService {
+
+    private final ApiProxyService apiProxyService;
+
+    // How many sub-requests of one batch run at the same time
+    @Value("${proxy.batch.concurrency:8}")
+    private int concurrency;
+
+    // The most sub-requests accepted in one batch
+    @Value("${proxy.batch.max-requests:50}")
+    private int maxRequests;
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    // This method runs the sub-requests with bounded concurrency and emits each result as soon as it completes
+    public Flux<ProxyBatchResult> execute(List<ProxyBatchItem> items) {
+        return Flux.fromIterable(items)
+                .flatMap(item -> execute(item).map(response -> toResult(item, response)), concurrency);
+    }
+
+    // This method dispatches one sub-request to the matching proxy endpoint
+    private Mono<ResponseEntity<String>> execute(ProxyBatchItem item) {
+        Map<String, String> params = item.getParams() == null ? Map.of() : item.getParams();
+        Optional<ProxyEndpoint> endpoint = ProxyEndpoint.fromPropertyName(item.getProvider());
+        if (endpoint.isEmpty()) {
+            return badRequest("Unknown provider: " + item.getProvider());
+        }
+
+        try {
+            return switch (endpoint.get()) {
+                case WEATHER -> apiProxyService.getWeather(
+                        requireDouble(params, "lat"), requireDouble(params, "lon"));
+                case AIR_QUALITY -> apiProxyService.getAirQuality(
+                        requireDouble(params, "lat"), requireDouble(params, "lon"));
+                case POINTS_OF_INTEREST -> apiProxyService.getPointsOfInterest(
+                        requireDouble(params, "latitude"), requireDouble(params, "longitude"));
+                case DIRECTIONS -> apiProxyService.getDirections(
+                        require(params, "start"), require(params, "end"), require(params, "profile"));
+                // Events are streamed rather than returned as one body, so they are not offered in batches
+                case EVENTS -> badRequest("Unknown provider: " + item.getProvider());
+            };
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+
+    // This method turns a proxy response into a batch result, keeping upstream bodies only for successful calls
+    private ProxyBatchResult toResult(ProxyBatchItem item, ResponseEntity<String> response) {
+        ProxyBatchResult.ProxyBatchResultBuilder result = ProxyBatchResult.builder()
+                .id(item.getId())
+                .status(response.getStatusCode().value());
+        if (response.getStatusCode().is2xxSuccessful()) {
+            result.body(response.getBody());
+        } else {
+            result.error(response.getBody());
+        }
+        return result.build();
+    }
+
+    private Mono<ResponseEntity<String>> badRequest(String message) {
+        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message));
+    }
+
+    private String require(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private double requireDouble(Map<String, String> params, String name) {
+        try {
+            return Double.parseDouble(require(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for parameter: " + name);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Service
+// This is a service class that caches the resolved bodies of upstream API responses for the proxy endpoints.
+// Entries are fresh for the endpoint's TTL, are then served stale while one background refresh runs, and can
+// finally be served as a fallback for a while longer when the upstream call fails.
+public class ProxyCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyCacheService.class);
+
+    // The clock used to age entries, which also drives Caffeine's expiry
+    private final Clock clock;
+
+    // The freshness windows configured for each endpoint
+    private final Map<ProxyEndpoint, CachePolicy> policies = new EnumMap<>(ProxyEndpoint.class);
+
+    // One Caffeine cache per endpoint so that each upstream provider can have its own TTL
+    private final Map<ProxyEndpoint, Cache<String, CachedResponse>> caches = new EnumMap<>(ProxyEndpoint.class);
+
+    // Upstream calls that are currently running, so that concurrent misses for the same key share one call
+    private final Map<ProxyEndpoint, Map<String, Mono<String>>> inFlight = new EnumMap<>(ProxyEndpoint.class);
+
+    @Autowired
+    public ProxyCacheService(Environment environment) {
+        this(environment, Clock.systemUTC());
+    }
+
+    ProxyCacheService(Environment environment, Clock clock) {
+        this.clock = clock;
+        long maximumSize = environment.getProperty("proxy.cache.maximum-size", Long.class, 500L);
+        Duration defaultStaleWhileRevalidate = environment.getProperty("proxy.cache.stale-while-revalidate",
+                Duration.class, Duration.ofMinutes(5));
+        Duration defaultStaleIfError = environment.getProperty("proxy.cache.stale-if-error",
+                Duration.class, Duration.ofHours(1));
+
+        for (ProxyEndpoint endpoint : ProxyEndpoint.values()) {
+            String prefix = "proxy.cache." + endpoint.getPropertyName();
+            CachePolicy policy = new CachePolicy(
+                    environment.getProperty(prefix + ".ttl", Duration.class, endpoint.getDefaultTtl()),
+                    environment.getProperty(prefix + ".stale-while-revalidate", Duration.class,
+                            defaultStaleWhileRevalidate),
+                    environment.getProperty(prefix + ".stale-if-error", Duration.class, defaultStaleIfError));
+            policies.put(endpoint, policy);
+
+            // Keep entries until the last window that can still serve them has passed
+            caches.put(endpoint, Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(policy.retention())
+                    .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                    .build());
+            inFlight.put(endpoint, new ConcurrentHashMap<>());
+        }
+    }
+
+    // This method returns the cached body for the key, or subscribes to the upstream call and caches its body.
+    // Only bodies that were emitted by the upstream call are stored, so errors (including non-2xx responses,
+    // which WebClient's retrieve() turns into WebClientResponseException) are never cached.
+    public Mono<String> getOrFetch(ProxyEndpoint endpoint, String key, Supplier<Mono<String>> upstream) {
+        Cache<String, CachedResponse> cache = caches.get(endpoint);
+        CachePolicy policy = policies.get(endpoint);
+        Supplier<Mono<String>> refresh = () -> fetchAndStore(endpoint, key, upstream);
+
+        return Mono.defer(() -> {
+            CachedResponse cached = cache.getIfPresent(key);
+            if (cached == null) {
+                logger.debug("Cache miss for {} key {}", endpoint.getPropertyName(), key);
+                return refresh.get();
+            }
+
+            Duration age = Duration.between(cached.fetchedAt(), clock.instant());
+            if (age.compareTo(policy.ttl()) < 0) {
+                logger.debug("Cache hit for {} key {}", endpoint.getPropertyName(), key);
+                return Mono.just(cached.body());
+            }
+
+            // Serve the stale body straight away and let one background call refresh the entry. The refresh uses
+            // the background quota lane, so it is skipped rather than eating into the quota of user requests.
+            if (age.compareTo(policy.ttl().plus(policy.staleWhileRevalidate())) < 0) {
+                logger.debug("Serving stale {} key {} while revalidating", endpoint.getPropertyName(), key);
+                refresh.get().contextWrite(QuotaLane.BACKGROUND.asContext()).subscribe(
+                        body -> { },
+                        error -> logger.warn("Background refresh failed for {} key {}: {}",
+                                endpoint.getPropertyName(), key, error.getMessage()));
+                return Mono.just(cached.body());
+            }
+
+            // Past the revalidation window the caller waits for upstream, but still gets the stale body if it fails
+            if (age.compareTo(policy.ttl().plus(policy.staleIfError())) < 0) {
+                return refresh.get().onErrorResume(error -> {
+                    logger.warn("Serving stale {} key {} after upstream error: {}",
+                            endpoint.getPropertyName(), key, error.getMessage());
+                    return Mono.just(cached.body());
+                });
+            }
+
+            logger.debug("Cache entry expired for {} key {}", endpoint.getPropertyName(), key);
+            return refresh.get();
+        });
+    }
+
+    // This method refreshes the entry for the key unless it will still be fresh after the given lead time, so that
+    // background warming replaces entries shortly before they expire instead of after
+    public Mono<Void> refreshAhead(ProxyEndpoint endpoint, String key, Duration lead, Supplier<Mono<String>> upstream) {
+        Cache<String, CachedResponse> cache = caches.get(endpoint);
+        CachePolicy policy = policies.get(endpoint);
+        return Mono.defer(() -> {
+            CachedResponse cached = cache.getIfPresent(key);
+            if (cached != null && Duration.between(cached.fetchedAt(), clock.instant()).plus(lead)
+                    .compareTo(policy.ttl()) < 0) {
+                return Mono.empty();
+            }
+            return fetchAndStore(endpoint, key, upstream).then();
+        });
+    }
+
+    // This method calls upstream through the single-flight map and stores the body it emits
+    private Mono<String> fetchAndStore(ProxyEndpoint endpoint, String key, Supplier<Mono<String>> upstream) {
+        Cache<String, CachedResponse> cache = caches.get(endpoint);
+        return singleFlight(endpoint, key, () -> upstream.get()
+                .doOnNext(body -> cache.put(key, new CachedResponse(body, clock.instant()))));
+    }
+
+    // This method makes concurrent callers for the same key share one upstream call. The first caller starts the
+    // call, in its own quota lane, and every caller that arrives before it finishes subscribes to the same result,
+    // including its error. The exception is an interactive caller that joined a background call refused for lack
+    // of background quota: it starts the call again in the interactive lane, which still has its reserve.
+    private Mono<String> singleFlight(ProxyEndpoint endpoint, String key, Supplier<Mono<String>> upstream) {
+        Map<String, Mono<String>> calls = inFlight.get(endpoint);
+        return Mono.deferContextual(context -> {
+            Mono<String> shared = calls.computeIfAbsent(key, k -> upstream.get()
+                    .doFinally(signal -> calls.remove(k))
+                    .cache());
+            if (context.getOrDefault(QuotaLane.class, QuotaLane.INTERACTIVE) == QuotaLane.BACKGROUND) {
+                return shared;
+            }
+            return shared.onErrorResume(
+                    error -> error instanceof QuotaExceededException quota && quota.getLane() == QuotaLane.BACKGROUND,
+                    error -> {
+                        logger.debug("Retrying {} key {} in the interactive lane", endpoint.getPropertyName(), key);
+                        calls.remove(key, shared);
+                        return singleFlight(endpoint, key, upstream);
+                    });
+        });
+    }
+}
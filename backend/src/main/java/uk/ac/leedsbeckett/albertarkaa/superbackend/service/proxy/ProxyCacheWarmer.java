@@ -0,0 +1,85 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "proxy.warmer.enabled", havingValue = "true", matchIfMissing = true)
+// This class periodically prefetches weather, air quality and points of interest for every active park, so that
+// requests from the park screens are served from the cache
+public class ProxyCacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyCacheWarmer.class);
+
+    // The endpoints that the app requests at each park's coordinates
+    private static final List<ProxyEndpoint> WARMED_ENDPOINTS =
+            List.of(ProxyEndpoint.WEATHER, ProxyEndpoint.AIR_QUALITY, ProxyEndpoint.POINTS_OF_INTEREST);
+
+    private final ParkRepository parkRepository;
+    private final ApiProxyService apiProxyService;
+
+    // How often the warmer runs; entries that would expire before the next run are refreshed
+    @Value("${proxy.warmer.interval:PT5M}")
+    private Duration interval;
+
+    // The most each upstream call is delayed by, to spread the calls over time
+    @Value("${proxy.warmer.max-jitter:PT30S}")
+    private Duration maxJitter;
+
+    // How many upstream calls the warmer runs at the same time
+    @Value("${proxy.warmer.concurrency:4}")
+    private int concurrency;
+
+    // This method refreshes the cached responses for every active park that would expire before the next run
+    @Scheduled(initialDelayString = "${proxy.warmer.initial-delay:PT30S}", fixedDelayString = "${proxy.warmer.interval:PT5M}")
+    public void warmParks() {
+        List<ParkModel> parks = parkRepository.findByActiveTrue();
+        Duration lead = interval.plus(maxJitter);
+        logger.info("Warming proxy caches for {} active parks", parks.size());
+
+        // Each call waits for its own random delay first, so the calls are spread out without holding a slot
+        Long failures = Flux.fromIterable(parks)
+                .flatMap(park -> Flux.fromIterable(WARMED_ENDPOINTS)
+                        .flatMap(endpoint -> Mono.delay(randomJitter())
+                                .map(tick -> (Supplier<Mono<Boolean>>) () -> warm(endpoint, park, lead))))
+                .flatMap(Supplier::get, concurrency)
+                .filter(succeeded -> !succeeded)
+                .count()
+                .block();
+
+        logger.info("Finished warming proxy caches with {} failed calls", failures);
+    }
+
+    // This method prefetches one endpoint for one park in the background quota lane and reports whether it succeeded
+    private Mono<Boolean> warm(ProxyEndpoint endpoint, ParkModel park, Duration lead) {
+        return apiProxyService.prefetch(endpoint, park.getLatitude(), park.getLongitude(), lead)
+                .contextWrite(QuotaLane.BACKGROUND.asContext())
+                .thenReturn(true)
+                .onErrorResume(error -> {
+                    logger.warn("Failed to warm {} for park {}: {}",
+                            endpoint.getPropertyName(), park.getName(), error.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    // This method returns a random delay of up to the configured maximum jitter
+    private Duration randomJitter() {
+        return maxJitter.isZero() ? Duration.ZERO
+                : Duration.ofMillis(ThreadLocalRandom.current().nextLong(maxJitter.toMillis()));
+    }
+}
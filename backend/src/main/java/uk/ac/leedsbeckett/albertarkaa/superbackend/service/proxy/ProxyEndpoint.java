@@ -0,0 +1,55 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// This enum lists the proxied upstream endpoints that have their own response cache
+public enum ProxyEndpoint {
+    // Weather is uniform over several kilometres, so it uses coarse ~4.9 km tiles
+    WEATHER("weather", Duration.ofMinutes(10), 5),
+    // WAQI reports the nearest station, so ~1.2 km x 0.6 km tiles are fine enough
+    AIR_QUALITY("air-quality", Duration.ofMinutes(15), 6),
+    // Route end points that are not near a park snap to ~38 m x 19 m tiles, which absorbs GPS jitter
+    DIRECTIONS("directions", Duration.ofHours(24), 8),
+    // POIs are searched within a 500 m buffer, so ~150 m tiles keep results close to the caller
+    POINTS_OF_INTEREST("points-of-interest", Duration.ofHours(24), 7),
+    // Events are listed for the whole service area, so they are cached as one entry a day and never snapped
+    EVENTS("events", Duration.ofMinutes(15), 0);
+
+    // The name used for this endpoint in configuration properties and log messages
+    private final String propertyName;
+
+    // How long a cached response stays fresh when no TTL is configured for this endpoint
+    private final Duration defaultTtl;
+
+    // The geohash precision that coordinates are snapped to when none is configured, or 0 for no snapping
+    private final int defaultGeohashPrecision;
+
+    ProxyEndpoint(String propertyName, Duration defaultTtl, int defaultGeohashPrecision) {
+        this.propertyName = propertyName;
+        this.defaultTtl = defaultTtl;
+        this.defaultGeohashPrecision = defaultGeohashPrecision;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Duration getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public int getDefaultGeohashPrecision() {
+        return defaultGeohashPrecision;
+    }
+
+    // This method returns the endpoint with the given property name, e.g. "air-quality"
+    public static Optional<ProxyEndpoint> fromPropertyName(String propertyName) {
+        for (ProxyEndpoint endpoint : values()) {
+            if (endpoint.propertyName.equals(propertyName)) {
+                return Optional.of(endpoint);
+            }
+        }
+        return Optional.empty();
+    }
+}
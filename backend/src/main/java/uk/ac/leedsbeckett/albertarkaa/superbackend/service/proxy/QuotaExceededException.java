@@ -0,0 +1,17 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+// This exception is thrown when none of a provider's API keys has quota left for the lane of the request
+public class QuotaExceededException extends RuntimeException {
+
+    private final QuotaLane lane;
+
+    public QuotaExceededException(UpstreamProvider provider, QuotaLane lane) {
+        super("Quota exhausted for " + provider.getPropertyName() + " (" + lane.name().toLowerCase() + " lane)");
+        this.lane = lane;
+    }
+
+    // This method returns the lane whose quota ran out
+    public QuotaLane getLane() {
+        return lane;
+    }
+}
@@ -0,0 +1,15 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import reactor.util.context.Context;
+
+// This enum lists the priority lanes that share an upstream provider's quota. Background work (cache warming and
+// stale-while-revalidate refreshes) stops before interactive requests do when the quota runs low.
+public enum QuotaLane {
+    INTERACTIVE,
+    BACKGROUND;
+
+    // This method returns a Reactor context that marks the upstream calls of a pipeline as belonging to this lane
+    public Context asContext() {
+        return Context.of(QuotaLane.class, this);
+    }
+}
@@ -0,0 +1,193 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+// This class builds the compact form of the weather and air quality responses. The cached body is read with a
+// streaming parser and only the fields the app shows are written out, so the full response is never built into a
+// tree and the compact form sent to the app is a tenth of the size or less.
+public class ResponseProjector {
+
+    // Marks a field that is copied with everything under it
+    private static final Object COPY = new Object();
+
+    // Marks the hourly forecast of a day, which is not copied in place but gathered into one list of coming hours
+    private static final Object HOURS = new Object();
+
+    // The current conditions, a daily summary for each forecast day and the hours gathered from their "hour" arrays
+    private static final Map<String, Object> WEATHER_FIELDS = Map.of(
+            "location", fields("name", "region", "country", "lat", "lon", "tz_id", "localtime_epoch", "localtime"),
+            "current", fields("last_updated_epoch", "last_updated", "temp_c", "is_day", "condition", "wind_mph",
+                    "wind_kph", "wind_dir", "pressure_mb", "precip_mm", "humidity", "cloud", "feelslike_c", "vis_km",
+                    "vis_miles", "uv", "gust_kph"),
+            "forecast", Map.of("forecastday", Map.of(
+                    "date", COPY,
+                    "date_epoch", COPY,
+                    "day", fields("maxtemp_c", "mintemp_c", "avgtemp_c", "maxwind_kph", "totalprecip_mm",
+                            "avghumidity", "daily_chance_of_rain", "daily_chance_of_snow", "condition", "uv"),
+                    "astro", fields("sunrise", "sunset"),
+                    "hour", HOURS)));
+
+    private static final List<String> HOUR_FIELDS = List.of("time_epoch", "time", "temp_c", "is_day", "condition",
+            "wind_kph", "precip_mm", "chance_of_rain", "feelslike_c", "uv");
+
+    // The overall index, the pollutant readings and the station, without the attributions, forecasts and debug data.
+    // A reading estimated from nearby stations is marked as such and lists them, which is kept as well.
+    private static final Map<String, Object> AIR_QUALITY_FIELDS = Map.of(
+            "status", COPY,
+            "data", Map.of(
+                    "aqi", COPY,
+                    "idx", COPY,
+                    "dominentpol", COPY,
+                    "iaqi", COPY,
+                    "time", COPY,
+                    "city", fields("name", "geo"),
+                    "estimated", COPY,
+                    "stations", COPY));
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    // How many hours of the hourly forecast are kept, starting with the current hour
+    private final int forecastHours;
+
+    @Autowired
+    public ResponseProjector(ObjectMapper objectMapper, Environment environment) {
+        this(objectMapper, environment, Clock.systemUTC());
+    }
+
+    ResponseProjector(ObjectMapper objectMapper, Environment environment, Clock clock) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.forecastHours = environment.getProperty("proxy.compact.weather.hours", Integer.class, 24);
+    }
+
+    // This method projects a WeatherAPI forecast response. The layout of the kept fields is unchanged, the hourly
+    // arrays are dropped from the forecast days and the next hours are listed in a top-level "hours" array instead.
+    public String weather(InputStream body) {
+        long currentHour = clock.instant().getEpochSecond() - 3600;
+        List<JsonNode> hours = new ArrayList<>(forecastHours);
+        return project(body, WEATHER_FIELDS, parser -> {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (hours.size() >= forecastHours) {
+                    parser.skipChildren();
+                    continue;
+                }
+                JsonNode hour = objectMapper.readTree(parser);
+                if (hour.path("time_epoch").asLong() > currentHour) {
+                    Map<String, JsonNode> kept = new LinkedHashMap<>();
+                    HOUR_FIELDS.stream().filter(hour::has).forEach(field -> kept.put(field, hour.get(field)));
+                    hours.add(objectMapper.valueToTree(kept));
+                }
+            }
+        }, generator -> {
+            generator.writeFieldName("hours");
+            objectMapper.writeTree(generator, objectMapper.createArrayNode().addAll(hours));
+        });
+    }
+
+    // This method projects a WAQI feed response
+    public String airQuality(InputStream body) {
+        return project(body, AIR_QUALITY_FIELDS, JsonParser::skipChildren, generator -> {
+        });
+    }
+
+    private String project(InputStream body, Map<String, Object> fields, HoursHandler hours, Trailer trailer) {
+        StringWriter out = new StringWriter();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("The upstream response is not a JSON object");
+            }
+            generator.writeStartObject();
+            projectFields(parser, generator, fields, hours);
+            trailer.write(generator);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the upstream response", e);
+        }
+        return out.toString();
+    }
+
+    // This method writes the kept fields of the object the parser is in and skips the rest without building them
+    @SuppressWarnings("unchecked")
+    private void projectFields(JsonParser parser, JsonGenerator generator, Map<String, Object> fields,
+                               HoursHandler hours) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            Object spec = fields.get(name);
+            if (spec == null) {
+                parser.skipChildren();
+            } else if (spec == HOURS) {
+                hours.handle(parser);
+            } else if (spec == COPY || !value.isStructStart()) {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            } else {
+                generator.writeFieldName(name);
+                projectValue(parser, generator, (Map<String, Object>) spec, hours);
+            }
+        }
+    }
+
+    // This method projects an object, or each object of an array, with the same fields
+    private void projectValue(JsonParser parser, JsonGenerator generator, Map<String, Object> fields,
+                              HoursHandler hours) throws IOException {
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            projectFields(parser, generator, fields, hours);
+            generator.writeEndObject();
+        } else {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.START_OBJECT) {
+                    projectValue(parser, generator, fields, hours);
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static Map<String, Object> fields(String... names) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (String name : names) {
+            fields.put(name, COPY);
+        }
+        return fields;
+    }
+
+    // Called with the parser on the value of an hourly forecast array
+    @FunctionalInterface
+    private interface HoursHandler {
+        void handle(JsonParser parser) throws IOException;
+    }
+
+    // Writes any fields that go at the end of the projected object
+    @FunctionalInterface
+    private interface Trailer {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
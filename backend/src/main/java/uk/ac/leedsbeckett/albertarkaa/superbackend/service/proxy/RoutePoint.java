@@ -0,0 +1,12 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import java.util.Locale;
+
+// This record holds a route end point after snapping: the key it is cached under and the coordinates sent upstream
+public record RoutePoint(String key, double latitude, double longitude) {
+
+    // This method formats the point as "longitude,latitude", the order that OpenRouteService expects
+    public String toLonLat() {
+        return String.format(Locale.ROOT, "%.6f,%.6f", longitude, latitude);
+    }
+}
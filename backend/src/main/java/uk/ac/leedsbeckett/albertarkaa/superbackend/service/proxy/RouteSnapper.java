@@ -0,0 +1,71 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog.ParkCatalog;
+
+import java.util.Optional;
+
+@Component
+// This class snaps the start and end of a route so that trips between the same places share a cache entry despite
+// GPS jitter. A point near an active park snaps to the park's coordinates and any other point snaps to the centre
+// of its geohash tile. Parks are looked up in the park catalog's grid, so no request waits on the database.
+public class RouteSnapper {
+
+    // How many of the nearest parks are looked at, since inactive parks in the catalog are skipped
+    private static final int NEAREST_PARKS = 5;
+
+    private final ParkCatalog parkCatalog;
+    private final GeoQuantizer geoQuantizer;
+
+    // How close a point must be to a park to snap to it
+    private final double parkRadiusMetres;
+
+    public RouteSnapper(ParkCatalog parkCatalog, GeoQuantizer geoQuantizer, Environment environment) {
+        this.parkCatalog = parkCatalog;
+        this.geoQuantizer = geoQuantizer;
+        this.parkRadiusMetres = environment.getProperty("proxy.route.park-snap-radius", Double.class, 100.0);
+    }
+
+    // This method parses a "longitude,latitude" pair as sent to the directions endpoint and snaps it
+    public RoutePoint snap(String lonLat) {
+        double[] point = parse(lonLat);
+        return snap(point[0], point[1]);
+    }
+
+    // This method parses a "longitude,latitude" pair into {latitude, longitude}
+    public static double[] parse(String lonLat) {
+        String[] parts = lonLat.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected longitude,latitude but got " + lonLat);
+        }
+        double longitude;
+        double latitude;
+        try {
+            longitude = Double.parseDouble(parts[0].trim());
+            latitude = Double.parseDouble(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected longitude,latitude but got " + lonLat);
+        }
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new IllegalArgumentException("Coordinates out of range: " + lonLat);
+        }
+        return new double[]{latitude, longitude};
+    }
+
+    public RoutePoint snap(double latitude, double longitude) {
+        Optional<ParksResponse> park = parkCatalog.nearby(latitude, longitude, parkRadiusMetres, NEAREST_PARKS)
+                .stream()
+                .map(NearbyParkResponse::getPark)
+                .filter(ParksResponse::isActive)
+                .findFirst();
+        if (park.isPresent()) {
+            return new RoutePoint("park:" + park.get().getId(), park.get().getLatitude(), park.get().getLongitude());
+        }
+
+        GeoTile tile = geoQuantizer.tileFor(ProxyEndpoint.DIRECTIONS, latitude, longitude);
+        return new RoutePoint(tile.geohash(), tile.latitude(), tile.longitude());
+    }
+}
@@ -0,0 +1,234 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+// This is a service class that prepares the spoken turn-by-turn instructions of a route. When a route is fetched it
+// can synthesise every step in the background, so that the clips are already stored when the walker reaches them.
+public class RouteSpeechService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteSpeechService.class);
+
+    private final ApiProxyService apiProxyService;
+    private final SpeechAudioStore speechAudioStore;
+    private final ObjectMapper objectMapper;
+
+    // How many instructions of one route are synthesised at the same time
+    @Value("${proxy.speech-presynthesis.concurrency:4}")
+    private int concurrency;
+
+    // The most instructions taken from one route, to bound the upstream calls a single request can cause
+    @Value("${proxy.speech-presynthesis.max-steps:100}")
+    private int maxSteps;
+
+    // This method returns the directions between two locations and, when asked to, starts synthesising the
+    // instructions of the route in the background without delaying the response
+    public Mono<ResponseEntity<String>> getDirections(String start, String end, String profile, boolean presynthesize) {
+        Mono<ResponseEntity<String>> directions = apiProxyService.getDirections(start, end, profile);
+        if (!presynthesize || !speechAudioStore.isEnabled()) {
+            return directions;
+        }
+        return directions.doOnNext(response -> {
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                presynthesize(response.getBody());
+            }
+        });
+    }
+
+    // This method returns the audio of every step of the route as one multipart/mixed response, with one part per
+    // step named step-<n> in route order. Clips are synthesised first when they are not stored yet, and a step whose
+    // clip could not be synthesised is left out. The clips are opened before the response is built, so that one
+    // evicted from the store in the meantime is still written in full.
+    public Mono<ResponseEntity<MultiValueMap<String, Object>>> getRouteAudio(String start, String end, String profile) {
+        if (!speechAudioStore.isEnabled()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return apiProxyService.getDirections(start, end, profile).flatMap(response -> {
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                return Mono.just(ResponseEntity.status(response.getStatusCode()).<MultiValueMap<String, Object>>build());
+            }
+
+            List<String> steps = extractInstructions(response.getBody());
+            return synthesize(new LinkedHashSet<>(steps))
+                    .map(clips -> ResponseEntity.ok()
+                            .contentType(MediaType.MULTIPART_MIXED)
+                            .body(toParts(steps, clips)));
+        });
+    }
+
+    // This method synthesises the instructions of a directions response that are not stored yet, in the background
+    // quota lane so that it cannot use up the quota of user requests
+    void presynthesize(String directions) {
+        List<String> missing = new LinkedHashSet<>(extractInstructions(directions)).stream()
+                .filter(instruction -> !speechAudioStore.contains(instruction))
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        logger.debug("Pre-synthesising {} route instructions", missing.size());
+        Flux.fromIterable(missing)
+                .flatMap(instruction -> apiProxyService.getSpeechClip(instruction)
+                        .onErrorResume(error -> {
+                            logger.warn("Failed to pre-synthesise \"{}\": {}", instruction, error.getMessage());
+                            return Mono.empty();
+                        }), concurrency)
+                .contextWrite(QuotaLane.BACKGROUND.asContext())
+                .subscribe();
+    }
+
+    // This method returns the instruction of every step of an OpenRouteService route, in order. Both the GeoJSON
+    // response of the GET endpoint and the JSON response of the POST endpoint are understood.
+    List<String> extractInstructions(String directions) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(directions);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not read the directions response: {}", e.getOriginalMessage());
+            return List.of();
+        }
+
+        List<String> instructions = new ArrayList<>();
+        JsonNode routes = root.has("features") ? root.path("features") : root.path("routes");
+        for (JsonNode route : routes) {
+            JsonNode segments = route.has("properties") ? route.path("properties").path("segments")
+                    : route.path("segments");
+            for (JsonNode segment : segments) {
+                for (JsonNode step : segment.path("steps")) {
+                    String instruction = step.path("instruction").asText("");
+                    if (!instruction.isBlank() && instructions.size() < maxSteps) {
+                        instructions.add(instruction);
+                    }
+                }
+            }
+        }
+        return instructions;
+    }
+
+    // This method opens the stored clip of each instruction, synthesising the missing ones with bounded parallelism
+    private Mono<Map<String, OpenClip>> synthesize(LinkedHashSet<String> instructions) {
+        return Flux.fromIterable(instructions)
+                .flatMap(instruction -> apiProxyService.openSpeechClip(instruction)
+                        .map(clip -> Map.entry(instruction, clip))
+                        .onErrorResume(error -> {
+                            logger.warn("Failed to synthesise \"{}\": {}", instruction, error.getMessage());
+                            return Mono.empty();
+                        }), concurrency)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private MultiValueMap<String, Object> toParts(List<String> steps, Map<String, OpenClip> clips) {
+        // A route can repeat an instruction, so each clip is shared by the parts of every step that speaks it
+        Map<String, AtomicInteger> readers = new HashMap<>();
+        for (String step : steps) {
+            if (clips.containsKey(step)) {
+                readers.computeIfAbsent(step, key -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        for (int index = 0; index < steps.size(); index++) {
+            OpenClip clip = clips.get(steps.get(index));
+            if (clip == null) {
+                continue;
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(clip.contentType());
+            headers.setContentLength(clip.length());
+            parts.add("step-" + index, new HttpEntity<>(new ClipResource(clip, readers.get(steps.get(index))),
+                    headers));
+        }
+        return parts;
+    }
+
+    // The body of one part, read from the start of a clip file that is already open. The file is read at explicit
+    // positions, so parts sharing it do not move each other's place, and it is closed once every part that shares
+    // it has been written.
+    private static final class ClipResource extends AbstractResource {
+
+        private final OpenClip clip;
+        private final AtomicInteger readers;
+
+        private ClipResource(OpenClip clip, AtomicInteger readers) {
+            this.clip = clip;
+            this.readers = readers;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            FileChannel channel = clip.channel();
+            return new InputStream() {
+                private long position;
+                private boolean closed;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    int read = channel.read(ByteBuffer.wrap(bytes, offset, length), position);
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        if (readers.decrementAndGet() == 0) {
+                            channel.close();
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public long contentLength() {
+            return clip.length();
+        }
+
+        @Override
+        public String getDescription() {
+            return "speech clip of " + clip.length() + " bytes";
+        }
+    }
+}
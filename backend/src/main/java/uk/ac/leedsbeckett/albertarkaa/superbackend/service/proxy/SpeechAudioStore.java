@@ -0,0 +1,259 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+@Component
+// This class keeps synthesised speech on disk, named by the SHA-256 hash of the normalised instruction, so that
+// repeated navigation phrases are served from a local file instead of calling VoiceRSS again. An in-memory index
+// in least recently used order keeps the total size of the files under a configured cap.
+public class SpeechAudioStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeechAudioStore.class);
+
+    // The voice settings are part of the hash so that changing them does not serve clips of the old voice
+    static final String VOICE = "en-us";
+
+    private static final Pattern CLIP_FILE = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9.+-]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final MediaType DEFAULT_TYPE = MediaType.parseMediaType("audio/mpeg");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    // The clips on disk by hash, with the least recently used first
+    private final LinkedHashMap<String, StoredClip> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    // Downloads that are currently running, so that concurrent misses for the same phrase share one upstream call
+    private final Map<String, Mono<StoredClip>> inFlight = new ConcurrentHashMap<>();
+
+    public SpeechAudioStore(Environment environment) {
+        this.directory = Paths.get(environment.getProperty("proxy.speech-cache.directory",
+                Paths.get(System.getProperty("java.io.tmpdir"), "super-speech-cache").toString()));
+        this.maxBytes = environment.getProperty("proxy.speech-cache.max-size", DataSize.class,
+                DataSize.ofMegabytes(256)).toBytes();
+        // The store is only an optimisation, so a directory that cannot be used disables it rather than startup
+        this.enabled = environment.getProperty("proxy.speech-cache.enabled", Boolean.class, true) && loadIndex();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // This method returns the stored clip for the instruction, or downloads it with the upstream call, writes it
+    // to disk and then returns it. Only complete, successful downloads are added to the store. Concurrent misses
+    // share one download, except that an interactive caller that joined a background download refused for lack of
+    // background quota downloads the clip again in its own lane, as the proxy cache does.
+    public Mono<StoredClip> getOrFetch(String instruction, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> upstream) {
+        return Mono.deferContextual(context -> {
+            String hash = hash(instruction);
+            StoredClip clip = lookup(hash);
+            if (clip != null) {
+                return Mono.just(clip);
+            }
+            Mono<StoredClip> shared = inFlight.computeIfAbsent(hash, key -> download(key, upstream)
+                    .doFinally(signal -> inFlight.remove(key))
+                    .cache());
+            if (context.getOrDefault(QuotaLane.class, QuotaLane.INTERACTIVE) == QuotaLane.BACKGROUND) {
+                return shared;
+            }
+            return shared.onErrorResume(
+                    error -> error instanceof QuotaExceededException quota && quota.getLane() == QuotaLane.BACKGROUND,
+                    error -> {
+                        logger.debug("Downloading speech clip {} again in the interactive lane", hash);
+                        inFlight.remove(hash, shared);
+                        return getOrFetch(instruction, upstream);
+                    });
+        });
+    }
+
+    // This method returns the stored clip for the instruction with its file open for reading, downloading it first on
+    // a miss. A clip that is evicted before its file is opened is treated as a miss and downloaded again, and a file
+    // that is open can be read to the end even if the clip is evicted while it is being streamed.
+    public Mono<OpenClip> open(String instruction, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> upstream) {
+        Mono<OpenClip> open = getOrFetch(instruction, upstream).flatMap(SpeechAudioStore::open);
+        return open.switchIfEmpty(open)
+                .switchIfEmpty(Mono.error(new IllegalStateException("The speech clip was evicted before it was read")));
+    }
+
+    // This method reports whether a clip for the instruction is already on disk
+    public boolean contains(String instruction) {
+        return enabled && lookup(hash(instruction)) != null;
+    }
+
+    // This method reduces an instruction to the form that is hashed, so that phrases differing only in case,
+    // spacing or Unicode representation share one clip
+    static String normalize(String instruction) {
+        String normalized = Normalizer.normalize(instruction, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    static String hash(String instruction) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest((VOICE + "\n" + normalize(instruction)).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // This method writes the upstream body to a temporary file and moves it into place once it is complete
+    private Mono<StoredClip> download(String hash, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> upstream) {
+        return upstream.get().flatMap(response -> {
+            MediaType contentType = response.getHeaders().getContentType() != null
+                    ? response.getHeaders().getContentType() : DEFAULT_TYPE;
+            if (!"audio".equals(contentType.getType())) {
+                // VoiceRSS reports some errors as a text body with status 200, which must not be stored as a clip
+                response.getBody().subscribe(DataBufferUtils::release);
+                return Mono.error(new IllegalStateException("The speech service returned " + contentType
+                        + " instead of audio"));
+            }
+            Path temporary = directory.resolve(hash + ".tmp");
+            Path target = directory.resolve(hash + "." + contentType.getSubtype().toLowerCase(Locale.ROOT));
+            return DataBufferUtils.write(response.getBody(), temporary)
+                    .then(Mono.fromCallable(() -> {
+                        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                        StoredClip clip = new StoredClip(target, contentType, Files.size(target));
+                        add(hash, clip);
+                        return clip;
+                    }).subscribeOn(Schedulers.boundedElastic()))
+                    .doOnError(error -> deleteQuietly(temporary));
+        });
+    }
+
+    // This method opens the file of a clip, or returns nothing when the clip has been evicted since it was looked up
+    private static Mono<OpenClip> open(StoredClip clip) {
+        return Mono.fromCallable(() -> {
+            try {
+                return new OpenClip(FileChannel.open(clip.path(), StandardOpenOption.READ), clip.contentType(),
+                        clip.length());
+            } catch (NoSuchFileException e) {
+                logger.debug("Speech clip {} was evicted before it was read", clip.path().getFileName());
+                return null;
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private synchronized StoredClip lookup(String hash) {
+        StoredClip clip = index.get(hash);
+        if (clip != null && !Files.isRegularFile(clip.path())) {
+            // The file was removed behind our back, so forget it and download it again
+            index.remove(hash);
+            totalBytes -= clip.length();
+            return null;
+        }
+        return clip;
+    }
+
+    // This method adds a clip to the index and deletes the least recently used clips until the store fits its cap
+    private void add(String hash, StoredClip clip) {
+        List<StoredClip> evicted = new ArrayList<>();
+        synchronized (this) {
+            StoredClip previous = index.put(hash, clip);
+            if (previous != null) {
+                totalBytes -= previous.length();
+            }
+            totalBytes += clip.length();
+
+            Iterator<Map.Entry<String, StoredClip>> eldest = index.entrySet().iterator();
+            while (totalBytes > maxBytes && index.size() > 1 && eldest.hasNext()) {
+                Map.Entry<String, StoredClip> entry = eldest.next();
+                if (entry.getKey().equals(hash)) {
+                    continue;
+                }
+                totalBytes -= entry.getValue().length();
+                evicted.add(entry.getValue());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(old -> deleteQuietly(old.path()));
+    }
+
+    // This method rebuilds the index from the files left by an earlier run, oldest first, and removes leftovers of
+    // downloads that did not finish. It returns false, leaving speech to be streamed from VoiceRSS, when the
+    // directory cannot be created or read.
+    private boolean loadIndex() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        deleteQuietly(file);
+                    } else if (CLIP_FILE.matcher(name).matches()) {
+                        files.add(file);
+                    }
+                }
+            }
+            files.sort(Comparator.comparing(SpeechAudioStore::lastModified));
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                add(name.substring(0, dot), new StoredClip(file,
+                        new MediaType("audio", name.substring(dot + 1)), Files.size(file)));
+            }
+            logger.info("Loaded {} stored speech clips ({} bytes) from {}", index.size(), totalBytes, directory);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not open the speech cache directory {}, so speech will not be stored: {}", directory,
+                    e.toString());
+            return false;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete speech cache file {}: {}", file, e.getMessage());
+        }
+    }
+}
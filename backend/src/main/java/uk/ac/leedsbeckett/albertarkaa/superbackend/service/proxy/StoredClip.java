@@ -0,0 +1,9 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+
+// This record holds the location, content type and size of an audio clip kept in the speech audio store
+public record StoredClip(Path path, MediaType contentType, long length) {
+}
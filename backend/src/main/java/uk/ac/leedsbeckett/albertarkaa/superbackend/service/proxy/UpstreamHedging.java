@@ -0,0 +1,145 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+// This class sends a second, hedged copy of an upstream request when the first one is slower than the provider
+// usually is, and uses whichever answers first. Hedging is opt-in per provider and limited by a budget, so hedges
+// stay a small share of upstream traffic.
+public class UpstreamHedging {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamHedging.class);
+
+    // How many recent latencies each provider keeps to estimate the hedge delay
+    private static final int LATENCY_WINDOW = 128;
+
+    // The budget is counted in thousandths of a hedge so that it can grow by a fraction on every request
+    private static final long MILLIS_PER_HEDGE = 1000;
+
+    private final Map<UpstreamProvider, HedgeState> states = new EnumMap<>(UpstreamProvider.class);
+
+    public UpstreamHedging(Environment environment) {
+        for (UpstreamProvider provider : UpstreamProvider.values()) {
+            String prefix = "proxy.hedging." + provider.getPropertyName();
+            if (environment.getProperty(prefix + ".enabled", Boolean.class, false)) {
+                states.put(provider, new HedgeState(
+                        property(environment, prefix, "percentile", Double.class, 95.0),
+                        property(environment, prefix, "min-delay", Duration.class, Duration.ofMillis(50)),
+                        property(environment, prefix, "budget-percent", Double.class, 5.0),
+                        property(environment, prefix, "min-samples", Integer.class, 20)));
+            }
+        }
+    }
+
+    // This method subscribes to the call and, if it has not answered within the provider's hedge delay and the
+    // budget allows it, subscribes to it a second time. The first attempt to signal wins and the other is cancelled.
+    public <T> Mono<T> hedge(UpstreamProvider provider, Mono<T> call) {
+        HedgeState state = states.get(provider);
+        if (state == null) {
+            return call;
+        }
+
+        return Mono.defer(() -> {
+            state.depositBudget();
+            Duration delay = state.hedgeDelay();
+            Mono<T> primary = timed(state, call);
+            if (delay == null) {
+                return primary;
+            }
+
+            Mono<T> hedged = Mono.delay(delay)
+                    .flatMap(tick -> {
+                        if (!state.tryWithdrawHedge()) {
+                            return Mono.never();
+                        }
+                        logger.debug("Hedging {} request after {} ms", provider.getPropertyName(), delay.toMillis());
+                        return timed(state, call);
+                    });
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    // This method records how long the call took when it succeeds
+    private <T> Mono<T> timed(HedgeState state, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(value -> state.recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    private static <T> T property(Environment environment, String prefix, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty(prefix + "." + name, type,
+                environment.getProperty("proxy.hedging." + name, type, defaultValue));
+    }
+
+    // The recent latencies and remaining hedge budget of one provider
+    private static final class HedgeState {
+
+        private final double percentile;
+        private final long minDelayNanos;
+        private final long depositPerRequest;
+        private final long maxBudget;
+        private final int minSamples;
+
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int nextLatency;
+        private int sampleCount;
+
+        private final AtomicLong budget = new AtomicLong();
+
+        private HedgeState(double percentile, Duration minDelay, double budgetPercent, int minSamples) {
+            this.percentile = percentile;
+            this.minDelayNanos = minDelay.toNanos();
+            this.depositPerRequest = Math.round(budgetPercent / 100 * MILLIS_PER_HEDGE);
+            this.maxBudget = 10 * MILLIS_PER_HEDGE;
+            this.minSamples = Math.min(minSamples, LATENCY_WINDOW);
+        }
+
+        private synchronized void recordLatency(long nanos) {
+            latencies[nextLatency] = nanos;
+            nextLatency = (nextLatency + 1) % LATENCY_WINDOW;
+            sampleCount = Math.min(sampleCount + 1, LATENCY_WINDOW);
+        }
+
+        // The configured percentile of recent latencies, or null until there are enough samples to trust it
+        private Duration hedgeDelay() {
+            long[] samples;
+            synchronized (this) {
+                if (sampleCount < minSamples) {
+                    return null;
+                }
+                samples = Arrays.copyOf(latencies, sampleCount);
+            }
+            Arrays.sort(samples);
+            int index = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+            long delay = samples[Math.max(0, Math.min(index, samples.length - 1))];
+            return Duration.ofNanos(Math.max(delay, minDelayNanos));
+        }
+
+        // Every request earns a fraction of a hedge, up to a small burst allowance
+        private void depositBudget() {
+            budget.accumulateAndGet(depositPerRequest, (current, deposit) -> Math.min(current + deposit, maxBudget));
+        }
+
+        private boolean tryWithdrawHedge() {
+            long current;
+            do {
+                current = budget.get();
+                if (current < MILLIS_PER_HEDGE) {
+                    return false;
+                }
+            } while (!budget.compareAndSet(current, current - MILLIS_PER_HEDGE));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+// This enum lists the third-party APIs behind the proxy endpoints and the hosts they are served from
+public enum UpstreamProvider {
+    WEATHER_API("weatherapi", "api.weatherapi.com", "WEATHER_API_KEY"),
+    WAQI("waqi", "api.waqi.info", "AIRQUALITY_API_KEY"),
+    OPENROUTE_SERVICE("openrouteservice", "api.openrouteservice.org", "OPENROUTE_API_KEY"),
+    VOICE_RSS("voicerss", "api.voicerss.org", "VOICERSS_API_KEY"),
+    PREDICT_HQ("predicthq", "api.predicthq.com", "PREDICTHQ_API_KEY");
+
+    // The name used for this provider in configuration properties, metrics and log messages
+    private final String propertyName;
+
+    private final String host;
+
+    // The property holding the provider's API key, loaded from .env.properties
+    private final String apiKeyProperty;
+
+    UpstreamProvider(String propertyName, String host, String apiKeyProperty) {
+        this.propertyName = propertyName;
+        this.host = host;
+        this.apiKeyProperty = apiKeyProperty;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getApiKeyProperty() {
+        return apiKeyProperty;
+    }
+}
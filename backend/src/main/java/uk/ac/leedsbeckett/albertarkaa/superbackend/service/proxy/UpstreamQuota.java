@@ -0,0 +1,196 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Component
+// This class keeps a token bucket for every API key of every upstream provider, so that the proxy spends its
+// quota deliberately instead of finding out from a 429. Requests take a token from the key with the most left,
+// and background requests (see QuotaLane) may not touch the reserve that is kept for interactive requests.
+public class UpstreamQuota {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamQuota.class);
+
+    private final Clock clock;
+
+    private final Map<UpstreamProvider, List<KeyBucket>> buckets = new EnumMap<>(UpstreamProvider.class);
+    private final Map<UpstreamProvider, Map<QuotaLane, Counter>> rejections = new EnumMap<>(UpstreamProvider.class);
+
+    @Autowired
+    public UpstreamQuota(Environment environment, MeterRegistry meterRegistry) {
+        this(environment, meterRegistry, Clock.systemUTC());
+    }
+
+    UpstreamQuota(Environment environment, MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        double defaultReserve = environment.getProperty("proxy.quota.background-reserve", Double.class, 0.2);
+
+        for (UpstreamProvider provider : UpstreamProvider.values()) {
+            String prefix = "proxy.quota." + provider.getPropertyName();
+
+            // Several keys can be listed to spread the load across accounts, otherwise the single key from
+            // .env.properties is used
+            String[] keys = environment.getProperty(prefix + ".keys", String[].class);
+            if (keys == null || keys.length == 0) {
+                keys = new String[]{environment.getRequiredProperty(provider.getApiKeyProperty())};
+            }
+
+            // A provider without a configured capacity is not limited
+            long capacity = environment.getProperty(prefix + ".capacity", Long.class, 0L);
+            Duration refillPeriod = environment.getProperty(prefix + ".refill-period", Duration.class,
+                    Duration.ofDays(1));
+            double reserve = environment.getProperty(prefix + ".background-reserve", Double.class, defaultReserve);
+
+            List<KeyBucket> providerBuckets = new ArrayList<>();
+            for (int index = 0; index < keys.length; index++) {
+                KeyBucket bucket = new KeyBucket(keys[index].trim(), index, capacity, refillPeriod, reserve,
+                        clock.millis());
+                providerBuckets.add(bucket);
+                if (bucket.isLimited()) {
+                    Gauge.builder("proxy.quota.tokens", bucket, b -> b.available(clock.millis()))
+                            .description("Upstream requests left in the quota of an API key")
+                            .tag("provider", provider.getPropertyName())
+                            .tag("key", String.valueOf(index))
+                            .register(meterRegistry);
+                }
+            }
+            buckets.put(provider, providerBuckets);
+
+            Map<QuotaLane, Counter> counters = new EnumMap<>(QuotaLane.class);
+            for (QuotaLane lane : QuotaLane.values()) {
+                counters.put(lane, Counter.builder("proxy.quota.rejected")
+                        .description("Upstream requests refused because the quota was exhausted")
+                        .tag("provider", provider.getPropertyName())
+                        .tag("lane", lane.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+            rejections.put(provider, counters);
+        }
+    }
+
+    // This method builds the upstream request with a key that has quota left for the lane found in the Reactor
+    // context (interactive when none is set), or fails with QuotaExceededException without calling upstream.
+    // When upstream answers 429 anyway the key is treated as empty and the request is retried once per other key.
+    public <T> Mono<T> withKey(UpstreamProvider provider, Function<String, Mono<T>> request) {
+        return Mono.deferContextual(context -> attempt(provider,
+                context.getOrDefault(QuotaLane.class, QuotaLane.INTERACTIVE), request,
+                buckets.get(provider).size()));
+    }
+
+    // This method returns how many requests are left for the key at the given index, which is used by the tests
+    double available(UpstreamProvider provider, int keyIndex) {
+        return buckets.get(provider).get(keyIndex).available(clock.millis());
+    }
+
+    private <T> Mono<T> attempt(UpstreamProvider provider, QuotaLane lane, Function<String, Mono<T>> request,
+                                int attemptsLeft) {
+        KeyBucket bucket = acquire(provider, lane);
+        if (bucket == null) {
+            rejections.get(provider).get(lane).increment();
+            logger.warn("No {} quota left for {} requests", provider.getPropertyName(), lane.name().toLowerCase());
+            return Mono.error(new QuotaExceededException(provider, lane));
+        }
+
+        return request.apply(bucket.key)
+                .onErrorResume(WebClientResponseException.TooManyRequests.class, error -> {
+                    logger.warn("{} key {} was throttled upstream, treating its quota as used up",
+                            provider.getPropertyName(), bucket.index);
+                    bucket.drain(clock.millis());
+                    return attemptsLeft > 1 ? attempt(provider, lane, request, attemptsLeft - 1) : Mono.error(error);
+                });
+    }
+
+    // This method takes a token from the key with the most tokens left, or returns null when no key can spare one
+    private KeyBucket acquire(UpstreamProvider provider, QuotaLane lane) {
+        long now = clock.millis();
+        List<KeyBucket> candidates = buckets.get(provider);
+        if (candidates.size() > 1) {
+            candidates = new ArrayList<>(candidates);
+            candidates.sort(Comparator.comparingDouble((KeyBucket b) -> b.available(now)).reversed());
+        }
+        for (KeyBucket bucket : candidates) {
+            if (bucket.tryAcquire(lane, now)) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    // The token bucket of one API key, refilled continuously so that the whole capacity returns every refill period
+    private static final class KeyBucket {
+
+        private final String key;
+        private final int index;
+        private final double capacity;
+        private final double tokensPerMilli;
+        private final double backgroundFloor;
+
+        private double tokens;
+        private long lastRefill;
+
+        private KeyBucket(String key, int index, long capacity, Duration refillPeriod, double reserve, long now) {
+            this.key = key;
+            this.index = index;
+            this.capacity = capacity;
+            this.tokensPerMilli = capacity / (double) Math.max(1, refillPeriod.toMillis());
+            this.backgroundFloor = capacity * Math.max(0, Math.min(reserve, 1));
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        private boolean isLimited() {
+            return capacity > 0;
+        }
+
+        // Interactive requests may spend the last token, background requests stop at the reserve
+        private synchronized boolean tryAcquire(QuotaLane lane, long now) {
+            if (!isLimited()) {
+                return true;
+            }
+            refill(now);
+            double floor = lane == QuotaLane.BACKGROUND ? backgroundFloor : 0;
+            if (tokens - 1 < floor) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        private synchronized double available(long now) {
+            if (!isLimited()) {
+                return Double.MAX_VALUE;
+            }
+            refill(now);
+            return tokens;
+        }
+
+        private synchronized void drain(long now) {
+            refill(now);
+            tokens = 0;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMilli);
+                lastRefill = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+// This class gives each upstream provider its own circuit breaker and bulkhead, so that a slow or failing provider
+// is cut off quickly and cannot hold the connections and event loop time that the other providers need
+public class UpstreamResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamResilience.class);
+
+    private final Map<UpstreamProvider, CircuitBreaker> circuitBreakers = new EnumMap<>(UpstreamProvider.class);
+    private final Map<UpstreamProvider, Bulkhead> bulkheads = new EnumMap<>(UpstreamProvider.class);
+
+    public UpstreamResilience(Environment environment, MeterRegistry meterRegistry) {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+        for (UpstreamProvider provider : UpstreamProvider.values()) {
+            String prefix = "proxy.resilience." + provider.getPropertyName();
+
+            CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                    .failureRateThreshold(property(environment, prefix, "failure-rate-threshold", Float.class, 50f))
+                    .slowCallRateThreshold(property(environment, prefix, "slow-call-rate-threshold", Float.class, 50f))
+                    .slowCallDurationThreshold(property(environment, prefix, "slow-call-duration-threshold",
+                            Duration.class, Duration.ofSeconds(5)))
+                    .slidingWindowSize(property(environment, prefix, "sliding-window-size", Integer.class, 20))
+                    .minimumNumberOfCalls(property(environment, prefix, "minimum-number-of-calls", Integer.class, 10))
+                    .waitDurationInOpenState(property(environment, prefix, "wait-duration-in-open-state",
+                            Duration.class, Duration.ofSeconds(30)))
+                    .permittedNumberOfCallsInHalfOpenState(3)
+                    .recordException(UpstreamResilience::isProviderFailure)
+                    // A full bulkhead or an exhausted quota is our own limit, so it is neither a failure nor a
+                    // success of the provider and is left out of the breaker's window altogether
+                    .ignoreExceptions(BulkheadFullException.class, QuotaExceededException.class)
+                    .build();
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(provider.getPropertyName(),
+                    circuitBreakerConfig);
+            circuitBreaker.getEventPublisher().onStateTransition(event ->
+                    logger.warn("Circuit breaker for {} changed from {} to {}", provider.getPropertyName(),
+                            event.getStateTransition().getFromState(), event.getStateTransition().getToState()));
+            circuitBreakers.put(provider, circuitBreaker);
+
+            // A reactive bulkhead must not block, so calls beyond the limit are rejected straight away
+            BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                    .maxConcurrentCalls(property(environment, prefix, "max-concurrent-calls", Integer.class, 20))
+                    .maxWaitDuration(Duration.ZERO)
+                    .build();
+            bulkheads.put(provider, bulkheadRegistry.bulkhead(provider.getPropertyName(), bulkheadConfig));
+        }
+
+        // Publish breaker state, failure rates and bulkhead usage as resilience4j.* meters
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    // This method runs the upstream call through the provider's circuit breaker and bulkhead. While the breaker is
+    // open the call fails immediately with CallNotPermittedException, and when the bulkhead is full it fails
+    // immediately with BulkheadFullException.
+    public <T> Mono<T> protect(UpstreamProvider provider, Mono<T> call) {
+        return call.transformDeferred(BulkheadOperator.of(bulkheads.get(provider)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreakers.get(provider)));
+    }
+
+    public CircuitBreaker.State getState(UpstreamProvider provider) {
+        return circuitBreakers.get(provider).getState();
+    }
+
+    public CircuitBreaker.Metrics getMetrics(UpstreamProvider provider) {
+        return circuitBreakers.get(provider).getMetrics();
+    }
+
+    // Client errors such as a bad coordinate say nothing about the provider's health, so only server errors,
+    // throttling (429), timeouts and connection failures count against the breaker
+    private static boolean isProviderFailure(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError()
+                    || responseException.getStatusCode().value() == 429;
+        }
+        return true;
+    }
+
+    private static <T> T property(Environment environment, String prefix, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty(prefix + "." + name, type,
+                environment.getProperty("proxy.resilience." + name, type, defaultValue));
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// This class is an immutable, undirected graph of walkable paths stored in primitive arrays. The edges of node n are
+// edgeTargets[firstEdge[n]] to edgeTargets[firstEdge[n + 1] - 1], so a graph of a city fits in a few megabytes and
+// is walked without boxing or pointer chasing. A coarse grid finds the node nearest to a coordinate.
+public final class PathGraph {
+
+    private static final double METRES_PER_DEGREE = 111_320;
+
+    // The grid cell size in degrees, about 220 m north to south
+    private static final double CELL_DEGREES = 0.002;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] firstEdge;
+    private final int[] edgeTargets;
+    private final float[] edgeLengths;
+    private final int[] edgeNames;
+    private final String[] names;
+    private final Map<Long, int[]> cells;
+
+    private PathGraph(double[] latitudes, double[] longitudes, int[] firstEdge, int[] edgeTargets,
+                      float[] edgeLengths, int[] edgeNames, String[] names, Map<Long, int[]> cells) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.firstEdge = firstEdge;
+        this.edgeTargets = edgeTargets;
+        this.edgeLengths = edgeLengths;
+        this.edgeNames = edgeNames;
+        this.names = names;
+        this.cells = cells;
+    }
+
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    public int edgeCount() {
+        return edgeTargets.length;
+    }
+
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    public int firstEdge(int node) {
+        return firstEdge[node];
+    }
+
+    public int endEdge(int node) {
+        return firstEdge[node + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public float edgeLength(int edge) {
+        return edgeLengths[edge];
+    }
+
+    public String edgeName(int edge) {
+        return names[edgeNames[edge]];
+    }
+
+    // This method returns the edge from one node to another, or -1 when they are not neighbours
+    public int findEdge(int from, int to) {
+        int best = -1;
+        for (int edge = firstEdge[from]; edge < firstEdge[from + 1]; edge++) {
+            if (edgeTargets[edge] == to && (best < 0 || edgeLengths[edge] < edgeLengths[best])) {
+                best = edge;
+            }
+        }
+        return best;
+    }
+
+    // This method returns the node nearest to the coordinates within the maximum distance, or -1 when there is none
+    public int nearestNode(double latitude, double longitude, double maxDistanceMetres) {
+        int latCells = (int) Math.ceil(maxDistanceMetres / (CELL_DEGREES * METRES_PER_DEGREE));
+        int lonCells = (int) Math.ceil(maxDistanceMetres
+                / (CELL_DEGREES * METRES_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)))));
+        long row = cellRow(latitude);
+        long column = cellColumn(longitude);
+
+        int nearest = -1;
+        double nearestDistance = maxDistanceMetres;
+        for (long r = row - latCells; r <= row + latCells; r++) {
+            for (long c = column - lonCells; c <= column + lonCells; c++) {
+                int[] nodes = cells.get(cellKey(r, c));
+                if (nodes == null) {
+                    continue;
+                }
+                for (int node : nodes) {
+                    double distance = distanceMetres(latitude, longitude, latitudes[node], longitudes[node]);
+                    if (distance <= nearestDistance) {
+                        nearest = node;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    // The distance between two points on an equirectangular projection, which is accurate to well under a metre
+    // at the scale of a walk and much cheaper than the haversine formula
+    public static double distanceMetres(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6_371_000;
+    }
+
+    private static long cellRow(double latitude) {
+        return (long) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static long cellColumn(double longitude) {
+        return (long) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long cellKey(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    // This class collects nodes and edges and packs them into a PathGraph. Nodes at the same coordinates (to about
+    // a centimetre) are merged, which is how separate ways that meet at a junction become connected.
+    public static final class Builder {
+
+        private final Map<Long, Integer> nodeIds = new HashMap<>();
+        private final Map<String, Integer> nameIds = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private double[] latitudes = new double[1024];
+        private double[] longitudes = new double[1024];
+        private int nodeCount;
+        private int[] edgeFrom = new int[1024];
+        private int[] edgeTo = new int[1024];
+        private int[] edgeName = new int[1024];
+        private int edgeCount;
+
+        // This method returns the node at the coordinates, adding it if it is new
+        public int node(double latitude, double longitude) {
+            long key = (Math.round(latitude * 1e7) << 32) ^ (Math.round(longitude * 1e7) & 0xffffffffL);
+            Integer existing = nodeIds.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (nodeCount == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+                longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+            }
+            latitudes[nodeCount] = latitude;
+            longitudes[nodeCount] = longitude;
+            nodeIds.put(key, nodeCount);
+            return nodeCount++;
+        }
+
+        // This method adds a path between two nodes that can be walked in both directions
+        public void path(int from, int to, String name) {
+            if (from == to) {
+                return;
+            }
+            int nameId = nameIds.computeIfAbsent(name == null || name.isBlank() ? "-" : name, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+            if (edgeCount + 2 > edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edgeFrom.length * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edgeTo.length * 2);
+                edgeName = Arrays.copyOf(edgeName, edgeName.length * 2);
+            }
+            addEdge(from, to, nameId);
+            addEdge(to, from, nameId);
+        }
+
+        private void addEdge(int from, int to, int nameId) {
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeName[edgeCount] = nameId;
+            edgeCount++;
+        }
+
+        // This method sorts the edges by their start node with a counting sort and builds the grid index
+        public PathGraph build() {
+            int[] firstEdge = new int[nodeCount + 1];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                firstEdge[edgeFrom[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                firstEdge[node + 1] += firstEdge[node];
+            }
+
+            int[] targets = new int[edgeCount];
+            float[] lengths = new float[edgeCount];
+            int[] edgeNames = new int[edgeCount];
+            int[] next = Arrays.copyOf(firstEdge, nodeCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                int from = edgeFrom[edge];
+                int slot = next[from]++;
+                targets[slot] = edgeTo[edge];
+                lengths[slot] = (float) distanceMetres(latitudes[from], longitudes[from],
+                        latitudes[edgeTo[edge]], longitudes[edgeTo[edge]]);
+                edgeNames[slot] = edgeName[edge];
+            }
+
+            Map<Long, List<Integer>> cellLists = new HashMap<>();
+            for (int node = 0; node < nodeCount; node++) {
+                if (firstEdge[node + 1] > firstEdge[node]) {
+                    cellLists.computeIfAbsent(cellKey(cellRow(latitudes[node]), cellColumn(longitudes[node])),
+                            key -> new ArrayList<>()).add(node);
+                }
+            }
+            Map<Long, int[]> cells = new HashMap<>(cellLists.size() * 2);
+            cellLists.forEach((key, nodes) -> cells.put(key, nodes.stream().mapToInt(Integer::intValue).toArray()));
+
+            return new PathGraph(Arrays.copyOf(latitudes, nodeCount), Arrays.copyOf(longitudes, nodeCount), firstEdge,
+                    targets, lengths, edgeNames, names.toArray(new String[0]), cells);
+        }
+    }
+}
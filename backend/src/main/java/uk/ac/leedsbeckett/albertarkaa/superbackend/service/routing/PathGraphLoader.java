@@ -0,0 +1,75 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.routing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+// This class reads a walking path graph from a GeoJSON FeatureCollection of LineString and MultiLineString ways,
+// such as an OpenStreetMap extract converted with osmium export or osmtogeojson. Features are read one at a time,
+// so a city-sized file does not have to fit in memory as a tree.
+public final class PathGraphLoader {
+
+    // Roads that pedestrians are not allowed on
+    private static final Set<String> EXCLUDED_HIGHWAYS = Set.of("motorway", "motorway_link", "trunk", "trunk_link",
+            "construction", "proposed");
+
+    private PathGraphLoader() {
+    }
+
+    public static PathGraph load(Path file, ObjectMapper objectMapper) throws IOException {
+        PathGraph.Builder builder = new PathGraph.Builder();
+        try (JsonParser parser = objectMapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a GeoJSON FeatureCollection in " + file);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        addFeature(builder, objectMapper.readTree(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // This method adds the lines of one way to the graph, unless the way cannot be walked
+    private static void addFeature(PathGraph.Builder builder, JsonNode feature) {
+        JsonNode properties = feature.path("properties");
+        if (EXCLUDED_HIGHWAYS.contains(properties.path("highway").asText())
+                || "no".equals(properties.path("foot").asText())
+                || "private".equals(properties.path("access").asText())) {
+            return;
+        }
+
+        String name = properties.path("name").asText("-");
+        JsonNode geometry = feature.path("geometry");
+        switch (geometry.path("type").asText()) {
+            case "LineString" -> addLine(builder, geometry.path("coordinates"), name);
+            case "MultiLineString" -> geometry.path("coordinates").forEach(line -> addLine(builder, line, name));
+            default -> {
+                // Points and areas are not paths
+            }
+        }
+    }
+
+    private static void addLine(PathGraph.Builder builder, JsonNode coordinates, String name) {
+        int previous = -1;
+        for (JsonNode coordinate : coordinates) {
+            int node = builder.node(coordinate.path(1).asDouble(), coordinate.path(0).asDouble());
+            if (previous >= 0) {
+                builder.path(previous, node, name);
+            }
+            previous = node;
+        }
+    }
+}
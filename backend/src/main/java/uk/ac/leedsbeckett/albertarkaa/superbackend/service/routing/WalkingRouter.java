@@ -0,0 +1,346 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.CompactRoute;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+// This class answers walking directions in-process with an A* search over a path graph loaded at startup, so trips
+// inside and between the parks need no OpenRouteService call. It is disabled unless routing.graph.path is set, and
+// requests it cannot answer (no graph, an end point off the graph, or no connecting path) are left to the caller.
+public class WalkingRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalkingRouter.class);
+
+    private final PathGraph graph;
+    private final Set<String> profiles;
+
+    // How far an end point may be from the nearest path node for the graph to cover it
+    private final double maxSnapDistance;
+
+    // Walking speed used for step and route durations, 5 km/h by default as OpenRouteService uses
+    private final double metresPerSecond;
+
+    // The most nodes one search may settle before giving up and leaving the route to OpenRouteService
+    private final int maxSettledNodes;
+
+    // Search arrays are the size of the graph, so a few are shared between requests instead of one per search or
+    // per thread. They are created on first use up to the pool size, and a search that finds none free is left to
+    // OpenRouteService rather than waiting.
+    private final BlockingQueue<SearchState> searchStates;
+    private final int maxSearchStates;
+    private final AtomicInteger createdSearchStates = new AtomicInteger();
+
+    public WalkingRouter(Environment environment, ObjectMapper objectMapper) {
+        this(loadGraph(environment.getProperty("routing.graph.path", ""), objectMapper), environment);
+    }
+
+    WalkingRouter(PathGraph graph, Environment environment) {
+        this.graph = graph;
+        this.profiles = Set.of(environment.getProperty("routing.profiles", String[].class,
+                new String[]{"foot-walking", "foot-hiking"}));
+        this.maxSnapDistance = environment.getProperty("routing.max-snap-distance", Double.class, 150.0);
+        this.metresPerSecond = environment.getProperty("routing.walking-speed", Double.class, 5.0) / 3.6;
+        this.maxSettledNodes = environment.getProperty("routing.max-settled-nodes", Integer.class, 100_000);
+        this.maxSearchStates = Math.max(1, environment.getProperty("routing.search-states", Integer.class,
+                Runtime.getRuntime().availableProcessors()));
+        this.searchStates = new ArrayBlockingQueue<>(maxSearchStates);
+    }
+
+    // This method reports whether the router can be asked for routes of this profile
+    public boolean supports(String profile) {
+        return graph != null && profiles.contains(profile);
+    }
+
+    // This method returns the shortest walking route between two points, or an empty result when the graph does not
+    // cover both points or they are not connected
+    public Optional<CompactRoute> route(double fromLat, double fromLon, double toLat, double toLon) {
+        if (graph == null) {
+            return Optional.empty();
+        }
+        int source = graph.nearestNode(fromLat, fromLon, maxSnapDistance);
+        int target = graph.nearestNode(toLat, toLon, maxSnapDistance);
+        if (source < 0 || target < 0) {
+            return Optional.empty();
+        }
+
+        SearchState state = acquireSearchState();
+        if (state == null) {
+            logger.debug("No search state free for a local route, leaving it to OpenRouteService");
+            return Optional.empty();
+        }
+        int[] path;
+        try {
+            path = shortestPath(state, source, target);
+        } finally {
+            searchStates.offer(state);
+        }
+        if (path == null) {
+            return Optional.empty();
+        }
+        return Optional.of(toRoute(path, new double[]{fromLon, fromLat}, new double[]{toLon, toLat}));
+    }
+
+    // This method runs A* with the straight-line distance to the target as the heuristic, which never overestimates
+    // because every edge is at least as long as the straight line between its ends
+    private int[] shortestPath(SearchState state, int source, int target) {
+        state.start();
+        double targetLat = graph.latitude(target);
+        double targetLon = graph.longitude(target);
+
+        state.open(source, 0, -1, heuristic(source, targetLat, targetLon));
+        int settled = 0;
+        while (!state.isEmpty()) {
+            int node = state.poll();
+            if (state.isClosed(node)) {
+                continue;
+            }
+            if (node == target) {
+                return state.path(target);
+            }
+            state.close(node);
+            if (++settled > maxSettledNodes) {
+                logger.debug("Gave up on a local route after settling {} nodes", settled);
+                return null;
+            }
+
+            double cost = state.cost(node);
+            for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                int next = graph.edgeTarget(edge);
+                if (state.isClosed(next)) {
+                    continue;
+                }
+                double nextCost = cost + graph.edgeLength(edge);
+                if (nextCost < state.cost(next)) {
+                    state.open(next, nextCost, node, nextCost + heuristic(next, targetLat, targetLon));
+                }
+            }
+        }
+        return null;
+    }
+
+    // This method takes a free search state from the pool, creating one while the pool is below its size, or
+    // returns null when every state is in use
+    private SearchState acquireSearchState() {
+        SearchState state = searchStates.poll();
+        if (state != null) {
+            return state;
+        }
+        int created = createdSearchStates.get();
+        while (created < maxSearchStates) {
+            if (createdSearchStates.compareAndSet(created, created + 1)) {
+                return new SearchState(graph.nodeCount());
+            }
+            created = createdSearchStates.get();
+        }
+        return null;
+    }
+
+    private double heuristic(int node, double targetLat, double targetLon) {
+        return PathGraph.distanceMetres(graph.latitude(node), graph.longitude(node), targetLat, targetLon);
+    }
+
+    // This method turns a node path into a route from the requested start to the requested end, with one leg per
+    // run of edges along the same named path
+    private CompactRoute toRoute(int[] path, double[] start, double[] end) {
+        List<double[]> points = new ArrayList<>(path.length + 2);
+        List<String> names = new ArrayList<>(path.length + 1);
+        for (int index = 0; index < path.length; index++) {
+            points.add(new double[]{graph.longitude(path[index]), graph.latitude(path[index])});
+            if (index > 0) {
+                names.add(graph.edgeName(graph.findEdge(path[index - 1], path[index])));
+            }
+        }
+
+        // The short walks to and from the graph take the name of the path they join, and are left out when the
+        // requested point is on the graph already
+        if (distance(start, points.get(0)) > 1) {
+            names.add(0, names.isEmpty() ? "-" : names.get(0));
+            points.add(0, start);
+        }
+        if (distance(points.get(points.size() - 1), end) > 1) {
+            names.add(names.isEmpty() ? "-" : names.get(names.size() - 1));
+            points.add(end);
+        }
+        if (names.isEmpty()) {
+            // Both points snapped to the same node and are on it, so the route is a single point
+            names.add("-");
+            points.add(end);
+        }
+
+        List<CompactRoute.Leg> legs = new ArrayList<>();
+        int legStart = 0;
+        double legDistance = 0;
+        for (int index = 0; index < names.size(); index++) {
+            legDistance += distance(points.get(index), points.get(index + 1));
+            boolean lastEdge = index == names.size() - 1;
+            if (lastEdge || !names.get(index + 1).equals(names.get(index))) {
+                legs.add(new CompactRoute.Leg(names.get(index), legStart, index + 1, round(legDistance)));
+                legStart = index + 1;
+                legDistance = 0;
+            }
+        }
+        return CompactRoute.fromLegs(points, legs, metresPerSecond);
+    }
+
+    // The distance in metres between two [longitude, latitude] points
+    private static double distance(double[] a, double[] b) {
+        return PathGraph.distanceMetres(a[1], a[0], b[1], b[0]);
+    }
+
+    private static double round(double metres) {
+        return Math.round(metres * 10) / 10.0;
+    }
+
+    private static PathGraph loadGraph(String location, ObjectMapper objectMapper) {
+        if (location == null || location.isBlank()) {
+            logger.info("No routing graph configured, all directions will be fetched from OpenRouteService");
+            return null;
+        }
+        Path file = Paths.get(location);
+        if (!Files.isReadable(file)) {
+            logger.warn("Routing graph {} cannot be read, all directions will be fetched from OpenRouteService", file);
+            return null;
+        }
+        try {
+            long started = System.nanoTime();
+            PathGraph graph = PathGraphLoader.load(file, objectMapper);
+            logger.info("Loaded routing graph with {} nodes and {} edges in {} ms", graph.nodeCount(),
+                    graph.edgeCount(), (System.nanoTime() - started) / 1_000_000);
+            return graph;
+        } catch (IOException | RuntimeException e) {
+            // A corrupt graph leaves routing to OpenRouteService, as a missing one does, rather than failing startup
+            logger.error("Routing graph {} could not be loaded, all directions will be fetched from "
+                    + "OpenRouteService: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    // The pooled arrays of one search. Entries are only valid when their stamp matches the current search, so
+    // starting a new search does not need to clear arrays the size of the graph.
+    private static final class SearchState {
+
+        private final int[] stamps;
+        private final int[] closedStamps;
+        private final double[] costs;
+        private final int[] parents;
+        private int generation;
+
+        // A binary min-heap of (priority, node) that may hold stale duplicates, which are skipped when polled
+        private int[] heapNodes = new int[256];
+        private double[] heapKeys = new double[256];
+        private int heapSize;
+
+        private SearchState(int nodeCount) {
+            stamps = new int[nodeCount];
+            closedStamps = new int[nodeCount];
+            costs = new double[nodeCount];
+            parents = new int[nodeCount];
+        }
+
+        private void start() {
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                Arrays.fill(closedStamps, 0);
+                generation = 1;
+            }
+            heapSize = 0;
+        }
+
+        private double cost(int node) {
+            return stamps[node] == generation ? costs[node] : Double.POSITIVE_INFINITY;
+        }
+
+        private boolean isClosed(int node) {
+            return closedStamps[node] == generation;
+        }
+
+        private void close(int node) {
+            closedStamps[node] = generation;
+        }
+
+        private void open(int node, double cost, int parent, double priority) {
+            stamps[node] = generation;
+            costs[node] = cost;
+            parents[node] = parent;
+            push(node, priority);
+        }
+
+        private int[] path(int target) {
+            int length = 0;
+            for (int node = target; node >= 0; node = parents[node]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int node = target, index = length - 1; node >= 0; node = parents[node], index--) {
+                path[index] = node;
+            }
+            return path;
+        }
+
+        private boolean isEmpty() {
+            return heapSize == 0;
+        }
+
+        private void push(int node, double key) {
+            if (heapSize == heapNodes.length) {
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            }
+            int index = heapSize++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heapKeys[parent] <= key) {
+                    break;
+                }
+                heapNodes[index] = heapNodes[parent];
+                heapKeys[index] = heapKeys[parent];
+                index = parent;
+            }
+            heapNodes[index] = node;
+            heapKeys[index] = key;
+        }
+
+        private int poll() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--heapSize];
+            double lastKey = heapKeys[heapSize];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= lastKey) {
+                    break;
+                }
+                heapNodes[index] = heapNodes[child];
+                heapKeys[index] = heapKeys[child];
+                index = child;
+            }
+            heapNodes[index] = lastNode;
+            heapKeys[index] = lastKey;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+// This class measures distances over the Earth's surface, treating it as a sphere of the mean radius
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_METRES = 6_371_000;
+
+    private GeoDistance() {
+    }
+
+    // This method returns the great-circle distance between two points in metres, using the haversine formula
+    public static double haversineMetres(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METRES * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,91 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+// This class encodes and decodes geohashes, which divide the world into a grid of base32-named tiles
+public final class GeoHash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    // The longest geohash supported, which is finer than GPS accuracy (about 3.7 cm x 1.9 cm)
+    public static final int MAX_PRECISION = 12;
+
+    private GeoHash() {
+    }
+
+    // This method returns the geohash of the given precision for the tile that contains the coordinates
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+        }
+
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+
+        // Alternate between halving the longitude and latitude ranges, five bits per base32 character
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLon = mid;
+                } else {
+                    index = index << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLat = mid;
+                } else {
+                    index = index << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(index));
+                bit = 0;
+                index = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    // This method returns the centre of the tile named by the geohash as a {latitude, longitude} pair
+    public static double[] decodeCenter(String geohash) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        boolean evenBit = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int index = BASE32.indexOf(geohash.charAt(i));
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid geohash character: " + geohash.charAt(i));
+            }
+            for (int mask = 16; mask > 0; mask >>= 1) {
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if ((index & mask) != 0) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if ((index & mask) != 0) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{(minLat + maxLat) / 2, (minLon + maxLon) / 2};
+    }
+}
@@ -0,0 +1,70 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// This class encodes and decodes lines with the Encoded Polyline Algorithm, which stores each coordinate as a
+// variable-length difference from the previous one. Coordinates are [longitude, latitude] pairs as in GeoJSON.
+public final class Polyline {
+
+    // Five decimal places, about 1.1 m, which is finer than the routes returned by OpenRouteService need
+    private static final double FACTOR = 1e5;
+
+    private Polyline() {
+    }
+
+    // This method encodes a list of [longitude, latitude] pairs
+    public static String encode(List<double[]> coordinates) {
+        StringBuilder encoded = new StringBuilder(coordinates.size() * 6);
+        long previousLat = 0;
+        long previousLon = 0;
+        for (double[] coordinate : coordinates) {
+            long lat = Math.round(coordinate[1] * FACTOR);
+            long lon = Math.round(coordinate[0] * FACTOR);
+            encodeValue(lat - previousLat, encoded);
+            encodeValue(lon - previousLon, encoded);
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return encoded.toString();
+    }
+
+    // This method decodes an encoded polyline into a list of [longitude, latitude] pairs
+    public static List<double[]> decode(String encoded) {
+        List<double[]> coordinates = new ArrayList<>();
+        int[] index = {0};
+        long lat = 0;
+        long lon = 0;
+        while (index[0] < encoded.length()) {
+            lat += decodeValue(encoded, index);
+            lon += decodeValue(encoded, index);
+            coordinates.add(new double[]{lon / FACTOR, lat / FACTOR});
+        }
+        return coordinates;
+    }
+
+    // Each value is zig-zag encoded and written in five-bit chunks, least significant first
+    private static void encodeValue(long value, StringBuilder encoded) {
+        long remaining = value < 0 ? ~(value << 1) : value << 1;
+        while (remaining >= 0x20) {
+            encoded.append((char) ((0x20 | (remaining & 0x1f)) + 63));
+            remaining >>= 5;
+        }
+        encoded.append((char) (remaining + 63));
+    }
+
+    private static long decodeValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (index[0] >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated polyline");
+            }
+            chunk = encoded.charAt(index[0]++) - 63;
+            result |= (long) (chunk & 0x1f) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
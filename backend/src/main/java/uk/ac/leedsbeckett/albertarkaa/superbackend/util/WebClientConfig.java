@@ -1,19 +1,88 @@
 package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.UpstreamProvider;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
 
 @Configuration
+// This is the configuration class for the WebClient used to call the upstream APIs. Each upstream host gets its own
+// connection pool, so a slow provider cannot take connections away from the others.
 public class WebClientConfig {
 
+    // This method builds the connection pool, with default limits and per-provider overrides under
+    // webclient.pool.<provider>.*, and publishes pool metrics under reactor.netty.connection.provider.*
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider upstreamConnectionProvider(Environment environment) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("upstream")
+                .metrics(true);
+        configurePool(builder, environment, "webclient.pool");
+
+        for (UpstreamProvider provider : UpstreamProvider.values()) {
+            String prefix = "webclient.pool." + provider.getPropertyName();
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(provider.getHost(), 443),
+                    spec -> configurePool(spec, environment, prefix));
+        }
+        return builder.build();
+    }
+
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ConnectionProvider upstreamConnectionProvider, Environment environment) {
+        Duration connectTimeout = environment.getProperty("webclient.connect-timeout", Duration.class,
+                Duration.ofSeconds(3));
+        Duration responseTimeout = environment.getProperty("webclient.response-timeout", Duration.class,
+                Duration.ofSeconds(15));
+        Duration dnsCacheTtl = environment.getProperty("webclient.dns-cache-ttl", Duration.class,
+                Duration.ofMinutes(5));
+        boolean http2 = environment.getProperty("webclient.http2.enabled", Boolean.class, false);
+
+        HttpClient httpClient = HttpClient.create(upstreamConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(responseTimeout)
+                // Cache DNS answers so that new connections do not wait for a lookup each time
+                .resolver(spec -> spec.cacheMaxTimeToLive(dnsCacheTtl)
+                        .cacheNegativeTimeToLive(Duration.ofSeconds(10)))
+                .compress(true);
+        if (http2) {
+            // Negotiate HTTP/2 through ALPN and fall back to HTTP/1.1 for hosts that do not support it
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
     }
 
     @Bean
     public WebClient webClient(WebClient.Builder webClientBuilder) {
         return webClientBuilder.build();
     }
-}
\ No newline at end of file
+
+    // This method applies the pool limits found under the prefix, falling back to the shared defaults
+    private void configurePool(ConnectionProvider.ConnectionPoolSpec<?> spec, Environment environment, String prefix) {
+        spec.maxConnections(environment.getProperty(prefix + ".max-connections", Integer.class,
+                        environment.getProperty("webclient.pool.max-connections", Integer.class, 50)))
+                .pendingAcquireMaxCount(environment.getProperty(prefix + ".pending-acquire-max-count", Integer.class,
+                        environment.getProperty("webclient.pool.pending-acquire-max-count", Integer.class, 200)))
+                .pendingAcquireTimeout(environment.getProperty(prefix + ".pending-acquire-timeout", Duration.class,
+                        environment.getProperty("webclient.pool.pending-acquire-timeout", Duration.class,
+                                Duration.ofSeconds(5))))
+                .maxIdleTime(environment.getProperty(prefix + ".max-idle-time", Duration.class,
+                        environment.getProperty("webclient.pool.max-idle-time", Duration.class,
+                                Duration.ofSeconds(30))))
+                .maxLifeTime(environment.getProperty(prefix + ".max-life-time", Duration.class,
+                        environment.getProperty("webclient.pool.max-life-time", Duration.class,
+                                Duration.ofMinutes(5))))
+                .evictInBackground(Duration.ofSeconds(30));
+    }
+}
@@ -7,16 +7,22 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ControllerResponse;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkConditionsResponse;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.ParkConditionsService;
 import uk.ac.leedsbeckett.albertarkaa.superbackend.service.ParkService;
 
 import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -28,6 +34,9 @@ class ParkControllerTest {
     @Mock
     private ParkService parkService;
 
+    @Mock
+    private ParkConditionsService parkConditionsService;
+
     @InjectMocks
     private ParkController parkController;
 
@@ -63,4 +72,27 @@ class ParkControllerTest {
                 .andExpect(jsonPath("$.data[0].name").value("Central Park"))
                 .andExpect(jsonPath("$.data[1].name").value("Hyde Park"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetParkConditions() throws Exception {
+        // Setup
+        ParkConditionsResponse conditions = ParkConditionsResponse.builder()
+                .parkId(1L)
+                .weather("{\"current\":{\"temp_c\":14.0}}")
+                .unavailableSections(List.of("airQuality"))
+                .build();
+
+        when(parkConditionsService.getConditions(anyInt()))
+                .thenReturn(Mono.just(new ControllerResponse<>(true, null, conditions)));
+
+        // Execute and Assert
+        MvcResult result = mockMvc.perform(get("/api/v1/parks/1/conditions"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.weather.current.temp_c").value(14.0))
+                .andExpect(jsonPath("$.data.airQuality").doesNotExist())
+                .andExpect(jsonPath("$.data.unavailableSections[0]").value("airQuality"));
+    }
+}
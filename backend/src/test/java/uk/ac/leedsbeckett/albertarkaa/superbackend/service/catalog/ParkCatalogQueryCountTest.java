@@ -0,0 +1,112 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs against an in-memory H2 database, counting the statements Hibernate sends when the catalog is loaded
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ParkCatalogQueryCountTest {
+
+    @Autowired
+    private ParkRepository parkRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private ParkCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        catalog = new ParkCatalog(parkRepository, transactionManager);
+    }
+
+    // Test that loading the catalog takes the same number of queries however many parks there are, rather than
+    // one query per park for each of its element collections
+    @Test
+    void testLoadsParksWithConstantQueries() {
+        addParks(0, 5);
+        long fewParks = queriesToLoad();
+        addParks(5, 50);
+        long manyParks = queriesToLoad();
+
+        assertEquals(fewParks, manyParks);
+        assertTrue(manyParks <= 4, "Loading took " + manyParks + " queries");
+
+        assertEquals(50, catalog.all().size());
+        ParksResponse park = catalog.all().stream()
+                .filter(candidate -> candidate.getName().equals("Park 7"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(List.of("Step-free paths", "Park 7 toilets"), park.getAccessibility());
+        assertEquals(List.of("Playground"), park.getChildrenFeatures());
+        assertEquals(List.of("Park 7 car park closed"), park.getNotices());
+    }
+
+    // Test that reading one park back after a write takes a query for the park and one for each collection
+    @Test
+    void testRefreshesParkWithConstantQueries() {
+        addParks(0, 5);
+        catalog.reload();
+        Long id = parkRepository.save(park(5)).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        catalog.refresh(id);
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "Refreshing took " + statistics.getPrepareStatementCount() + " queries");
+        assertEquals(List.of("Park 5 car park closed"), catalog.get(id).orElseThrow().getNotices());
+    }
+
+    private long queriesToLoad() {
+        statistics.clear();
+        catalog.reload();
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Parks are written and the persistence context is cleared, so the catalog has to read them from the database
+    private void addParks(int from, int to) {
+        for (int number = from; number < to; number++) {
+            entityManager.persist(park(number));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static ParkModel park(int number) {
+        return ParkModel.builder()
+                .name("Park " + number)
+                .latitude(53.8 + number * 0.001)
+                .longitude(-1.55)
+                .active(true)
+                .accessibility(List.of("Step-free paths", "Park " + number + " toilets"))
+                .childrenFeatures(List.of("Playground"))
+                .notices(List.of("Park " + number + " car park closed"))
+                .build();
+    }
+}
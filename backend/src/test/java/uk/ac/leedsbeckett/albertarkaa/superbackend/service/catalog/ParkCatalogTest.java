@@ -0,0 +1,89 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.repository.ParkRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ParkCatalogTest {
+
+    private ParkRepository parkRepository;
+    private ParkCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        parkRepository = mock(ParkRepository.class);
+        when(parkRepository.findAll()).thenReturn(List.of(
+                park(2L, "Roundhay Park"),
+                park(1L, "Hyde Park"),
+                park(3L, "Temple Newsam")));
+        catalog = new ParkCatalog(parkRepository, TransactionOperations.withoutTransaction());
+    }
+
+    // Test that the parks are read from the database once and then served from memory
+    @Test
+    void testServesReadsFromSnapshot() {
+        assertEquals(List.of(1L, 2L, 3L), ids(catalog.all()));
+        assertEquals("Roundhay Park", catalog.get(2L).orElseThrow().getName());
+        assertTrue(catalog.get(4L).isEmpty());
+        assertEquals(List.of(1L, 2L), ids(catalog.search("PARK", 10)));
+        assertEquals(List.of(3L), ids(catalog.search("newsam", 10)));
+
+        verify(parkRepository, times(1)).findAll();
+    }
+
+    // Test that a write swaps in a new snapshot without changing the one already handed out
+    @Test
+    void testRefreshReplacesInsertsAndRemoves() {
+        List<ParksResponse> before = catalog.all();
+
+        when(parkRepository.findById(2)).thenReturn(Optional.of(park(2L, "Roundhay")));
+        catalog.refresh(2L);
+        when(parkRepository.findById(5)).thenReturn(Optional.of(park(5L, "Kirkstall Abbey")));
+        catalog.refresh(5L);
+        when(parkRepository.findById(1)).thenReturn(Optional.empty());
+        catalog.refresh(1L);
+
+        assertEquals(List.of(2L, 3L, 5L), ids(catalog.all()));
+        assertEquals("Roundhay", catalog.get(2L).orElseThrow().getName());
+        assertTrue(catalog.get(1L).isEmpty());
+        assertEquals(List.of(5L), ids(catalog.search("abbey", 10)));
+        assertTrue(catalog.search("hyde", 10).isEmpty());
+
+        assertEquals(List.of(1L, 2L, 3L), ids(before));
+        assertEquals("Roundhay Park", before.get(1).getName());
+        verify(parkRepository, times(1)).findAll();
+    }
+
+    // Test that the element collections are copied out of the entity
+    @Test
+    void testCopiesElementCollections() {
+        List<String> notices = new ArrayList<>(List.of("Car park closed"));
+        ParkModel model = park(1L, "Hyde Park");
+        model.setNotices(notices);
+        when(parkRepository.findAll()).thenReturn(List.of(model));
+
+        ParksResponse response = catalog.get(1L).orElseThrow();
+        notices.add("Cafe open");
+
+        assertEquals(List.of("Car park closed"), response.getNotices());
+        assertThrows(UnsupportedOperationException.class, () -> response.getNotices().add("Toilets open"));
+    }
+
+    private static ParkModel park(long id, String name) {
+        return ParkModel.builder().id(id).name(name).active(true).build();
+    }
+
+    private static List<Long> ids(List<ParksResponse> parks) {
+        return parks.stream().map(ParksResponse::getId).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.NearbyParkResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.util.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkGridTest {
+
+    // Test that nearest and radius searches find the same parks as measuring the distance to every park
+    @Test
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(42);
+        List<ParksResponse> parks = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            parks.add(park(id, 53.70 + random.nextDouble() * 0.3, -1.70 + random.nextDouble() * 0.4));
+        }
+        // A few parks far from the rest, so that some searches have to leave the dense area
+        parks.add(park(2001, 51.5074, -0.1278));
+        parks.add(park(2002, 55.9533, -3.1883));
+        ParkGrid grid = ParkGrid.of(parks);
+
+        double[][] locations = {{53.80, -1.55}, {53.6, -1.9}, {52.0, -1.0}, {51.5, -0.1}, {60.0, 5.0}};
+        for (double[] location : locations) {
+            for (int limit : new int[]{1, 5, 50}) {
+                assertEquals(exhaustive(parks, location, Double.POSITIVE_INFINITY, limit),
+                        ids(grid.nearest(location[0], location[1], Double.POSITIVE_INFINITY, limit)));
+                assertEquals(exhaustive(parks, location, 1500, limit),
+                        ids(grid.nearest(location[0], location[1], 1500, limit)));
+            }
+        }
+    }
+
+    // Test that a new grid can be made with a park moved or removed, leaving the original unchanged
+    @Test
+    void testWithMovesAndRemovesParks() {
+        ParksResponse roundhay = park(1, 53.8380, -1.4985);
+        ParksResponse hyde = park(2, 53.8095, -1.5611);
+        ParkGrid grid = ParkGrid.of(List.of(roundhay, hyde));
+
+        ParksResponse moved = park(1, 53.8096, -1.5612);
+        ParkGrid next = grid.with(roundhay, moved).with(hyde, null);
+
+        List<NearbyParkResponse> found = next.nearest(53.8095, -1.5611, 500, 10);
+        assertEquals(List.of(1L), ids(found));
+        assertEquals(13, found.get(0).getDistance(), 1);
+        assertTrue(next.nearest(53.8380, -1.4985, 500, 10).isEmpty());
+
+        assertEquals(List.of(2L), ids(grid.nearest(53.8095, -1.5611, 500, 10)));
+        assertEquals(List.of(1L), ids(grid.nearest(53.8380, -1.4985, 500, 10)));
+    }
+
+    private static List<Long> exhaustive(List<ParksResponse> parks, double[] location, double radius, int limit) {
+        return parks.stream()
+                .map(park -> new NearbyParkResponse(GeoDistance.haversineMetres(location[0], location[1],
+                        park.getLatitude(), park.getLongitude()), park))
+                .filter(nearby -> nearby.getDistance() <= radius)
+                .sorted(Comparator.comparingDouble(NearbyParkResponse::getDistance))
+                .limit(limit)
+                .map(nearby -> nearby.getPark().getId())
+                .toList();
+    }
+
+    private static ParksResponse park(long id, double latitude, double longitude) {
+        return ParksResponse.builder().id(id).name("Park " + id).latitude(latitude).longitude(longitude).build();
+    }
+
+    private static List<Long> ids(List<NearbyParkResponse> parks) {
+        return parks.stream().map(nearby -> nearby.getPark().getId()).toList();
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkSearchIndexTest {
+
+    private ParksResponse roundhay;
+    private ParksResponse hyde;
+    private ParksResponse golden;
+    private ParkSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        roundhay = park(1, "Roundhay Park", "Mansion Lane, Leeds", "LS8 2HH",
+                "Over 700 acres of parkland, lakes and gardens", 4.7, 9000);
+        hyde = park(2, "Hyde Park", "Clarendon Road, Leeds", "LS6 1AN",
+                "A green space with a bowling green and playground", 4.3, 1200);
+        golden = park(3, "Golden Acre Park", "Otley Road, Bramhope", "LS16 9JY",
+                "Lake, café and gardens on the edge of Leeds", 4.6, 2500);
+        index = ParkSearchIndex.of(List.of(roundhay, hyde, golden));
+    }
+
+    // Test that words are found in every field, ignoring case and accents, with name matches ranked first
+    @Test
+    void testRanksMatchesAcrossFields() {
+        assertEquals(List.of(1L), ids(index.search("ROUNDHAY", 10)));
+        assertEquals(List.of(2L), ids(index.search("clarendon", 10)));
+        assertEquals(List.of(3L), ids(index.search("cafe", 10)));
+        assertEquals(List.of(1L), ids(index.search("ls8 2hh", 10)));
+        assertEquals(List.of(1L), ids(index.search("LS82HH", 10)));
+
+        // "Lake" is in Golden Acre's description as a whole word and in Roundhay's only as the start of "lakes"
+        assertEquals(List.of(3L, 1L), ids(index.search("lake", 10)));
+
+        // Parks matching more words come first, Roundhay scoring more through "parkland", and equal scores are
+        // ordered by rating
+        assertEquals(List.of(1L, 3L, 2L), ids(index.search("gardens park", 10)));
+        assertEquals(List.of(1L, 3L), ids(index.search("park", 2)));
+    }
+
+    // Test that misspelt words still find the park through shared trigrams
+    @Test
+    void testFindsTypos() {
+        assertEquals(List.of(1L), ids(index.search("roundhey", 10)));
+        assertEquals(List.of(3L), ids(index.search("bramhop", 10)));
+        assertTrue(index.search("xyz", 10).isEmpty());
+    }
+
+    // Test that a new index can be made with a park changed or removed, leaving the original unchanged
+    @Test
+    void testWithUpdatesAndRemovesParks() {
+        ParksResponse renamed = park(2, "Woodhouse Moor", "Clarendon Road, Leeds", "LS6 1AN",
+                "A green space with a bowling green and playground", 4.3, 1200);
+        ParkSearchIndex next = index.with(hyde, renamed).with(roundhay, null);
+
+        assertEquals(List.of(2L), ids(next.search("woodhouse", 10)));
+        assertEquals(List.of(2L), ids(next.search("moo", 10)));
+        assertTrue(next.search("hyde", 10).isEmpty());
+        assertTrue(next.search("roundhay", 10).isEmpty());
+        assertEquals(List.of(3L), ids(next.search("park", 10)));
+
+        assertEquals(List.of(2L), ids(index.search("hyde", 10)));
+        assertTrue(index.search("woodhouse", 10).isEmpty());
+    }
+
+    private static ParksResponse park(long id, String name, String address, String postcode, String description,
+                                      double rating, int reviewCount) {
+        return ParksResponse.builder().id(id).name(name).address(address).postcode(postcode)
+                .description(description).rating(rating).reviewCount(reviewCount).build();
+    }
+
+    private static List<Long> ids(List<ParksResponse> parks) {
+        return parks.stream().map(ParksResponse::getId).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.catalog;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParkSuggestionResponse;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ParksResponse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkSuggestTrieTest {
+
+    // Test that names, later words of names and postcodes are matched, best rated first
+    @Test
+    void testSuggestsByNameWordAndPostcode() {
+        ParkSuggestTrie trie = ParkSuggestTrie.of(List.of(
+                park(1, "Roundhay Park", "LS8 2HH", 4.7, 9000),
+                park(2, "Hyde Park", "LS6 1AN", 4.3, 1200),
+                park(3, "Golden Acre Park", "LS16 9JY", 4.6, 2500),
+                park(4, "Rothwell Country Park", "LS26 0AA", 4.6, 800),
+                park(5, "Middleton Park", "LS10 3SH", 4.5, 3000)));
+
+        assertEquals(List.of(1L, 4L), ids(trie.suggest("Ro", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("roundhay p", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("Roundhay  ", 10)));
+        assertEquals(List.of(1L, 3L, 4L, 5L, 2L), ids(trie.suggest("park", 10)));
+        assertEquals(List.of(1L, 3L), ids(trie.suggest("park", 2)));
+        assertEquals(List.of(4L), ids(trie.suggest("country", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("ls8", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("LS82", 10)));
+        assertEquals(List.of(3L, 5L), ids(trie.suggest("ls1", 10)));
+        assertEquals("Roundhay Park", trie.suggest("roundhay", 1).get(0).getName());
+
+        assertTrue(trie.suggest("rounds", 10).isEmpty());
+        assertTrue(trie.suggest("", 10).isEmpty());
+        assertTrue(trie.suggest("xyz", 10).isEmpty());
+    }
+
+    // Test that every prefix gets the same parks as filtering and ordering the whole catalog
+    @Test
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(7);
+        String[] words = {"oak", "oakwood", "meadow", "mead", "moor", "green", "grange", "park", "common", "hill"};
+        List<ParksResponse> parks = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            parks.add(park(id, name, null, Math.round(random.nextDouble() * 50) / 10.0, random.nextInt(100)));
+        }
+        ParkSuggestTrie trie = ParkSuggestTrie.of(parks);
+
+        for (String prefix : List.of("o", "oak", "oakw", "m", "mea", "meadow ", "moor g", "gr", "hill hi", "z")) {
+            List<Long> expected = parks.stream()
+                    .filter(park -> park.getName().startsWith(prefix) || park.getName().contains(" " + prefix))
+                    .sorted(Comparator.comparing(ParksResponse::getRating).reversed()
+                            .thenComparing(Comparator.comparing(ParksResponse::getReviewCount).reversed())
+                            .thenComparing(ParksResponse::getId))
+                    .limit(ParkSuggestTrie.TOP_K)
+                    .map(ParksResponse::getId)
+                    .toList();
+            assertEquals(expected, ids(trie.suggest(prefix.toUpperCase(Locale.ROOT), 20)), prefix);
+        }
+    }
+
+    private static ParksResponse park(long id, String name, String postcode, double rating, int reviewCount) {
+        return ParksResponse.builder().id(id).name(name).postcode(postcode).rating(rating).reviewCount(reviewCount)
+                .build();
+    }
+
+    private static List<Long> ids(List<ParkSuggestionResponse> suggestions) {
+        return suggestions.stream().map(ParkSuggestionResponse::getId).toList();
+    }
+}
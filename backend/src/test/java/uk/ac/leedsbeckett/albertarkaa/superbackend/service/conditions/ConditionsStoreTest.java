@@ -0,0 +1,104 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.ProxyEndpoint;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionsStoreTest {
+
+    private static final long MIDNIGHT = Instant.parse("2024-07-01T00:00:00Z").getEpochSecond();
+
+    private final ConditionsStore store;
+
+    ConditionsStoreTest() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setConversionService(new ApplicationConversionService());
+        store = new ConditionsStore(environment, new ObjectMapper(),
+                Clock.fixed(Instant.parse("2024-07-01T10:30:00Z"), ZoneOffset.UTC));
+    }
+
+    // Test that one forecast response answers the current, hourly and daily views
+    @Test
+    void testRecordsWeatherResponse() {
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", """
+                {"current":{"last_updated_epoch":%d,"temp_c":18.5,"humidity":70,"condition":{"code":1003}},
+                 "forecast":{"forecastday":[
+                   {"date_epoch":%d,"day":{"maxtemp_c":21.0,"mintemp_c":11.0,"condition":{"code":1000}},
+                    "hour":[{"time_epoch":%d,"temp_c":17.0,"chance_of_rain":10,"condition":{"code":1003}},
+                            {"time_epoch":%d,"temp_c":19.0,"chance_of_rain":40,"condition":{"code":1063}}]},
+                   {"date_epoch":%d,"day":{"maxtemp_c":16.0,"mintemp_c":9.0,"condition":{"code":1183}},"hour":[]}]}}
+                """.formatted(MIDNIGHT + 10 * 3600, MIDNIGHT, MIDNIGHT + 10 * 3600, MIDNIGHT + 11 * 3600,
+                MIDNIGHT + 86400));
+
+        ConditionsStore.WeatherSeries weather = store.weather("gcwcn", Duration.ofMinutes(10)).orElseThrow();
+        TimeSeries.Slice current = weather.observed().raw().latest(1);
+        assertEquals(18.5, current.values()[ConditionsStore.WEATHER_METRICS.indexOf("temp_c")][0], 1e-6);
+        assertTrue(Float.isNaN(current.values()[ConditionsStore.WEATHER_METRICS.indexOf("uv")][0]));
+
+        TimeSeries.Slice hourly = weather.hourlyForecast().orElseThrow().range(MIDNIGHT + 11 * 3600, Long.MAX_VALUE);
+        assertArrayEquals(new long[]{MIDNIGHT + 11 * 3600}, hourly.times());
+        assertEquals(40, hourly.values()[ConditionsStore.HOURLY_FORECAST_METRICS.indexOf("chance_of_rain")][0]);
+        assertEquals(1063, hourly.values()[ConditionsStore.HOURLY_FORECAST_METRICS.indexOf("condition_code")][0]);
+
+        TimeSeries.Slice daily = weather.dailyForecast().orElseThrow().latest(7);
+        assertEquals(2, daily.times().length);
+        assertEquals(9, daily.values()[ConditionsStore.DAILY_FORECAST_METRICS.indexOf("mintemp_c")][1]);
+
+        assertTrue(store.weather("gcwcp", Duration.ofMinutes(10)).isEmpty());
+    }
+
+    // Test that reading the same observation again, as a cached response would, does not count it twice
+    @Test
+    void testSkipsRepeatedObservations() {
+        String first = "{\"current\":{\"last_updated_epoch\":%d,\"temp_c\":10.0}}"
+                .formatted(MIDNIGHT + 9 * 3600);
+        String second = "{\"current\":{\"last_updated_epoch\":%d,\"temp_c\":20.0}}"
+                .formatted(MIDNIGHT + 9 * 3600 + 900);
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", first);
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", first);
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", second);
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", second);
+        store.record(ProxyEndpoint.WEATHER, "gcwcn", first);
+
+        ConditionsStore.Observations observed = store.weather("gcwcn", Duration.ofMinutes(10)).orElseThrow()
+                .observed();
+        assertEquals(2, observed.raw().latest(10).times().length);
+        TimeSeries.Slice hourly = observed.hourly().range(MIDNIGHT, MIDNIGHT + 86400);
+        assertEquals(15, hourly.values()[ConditionsStore.WEATHER_METRICS.indexOf("temp_c")][0], 1e-6);
+    }
+
+    // Test that air quality readings build up an hourly trend, with "-" read as a missing value
+    @Test
+    void testRecordsAirQualityTrend() {
+        store.record(ProxyEndpoint.AIR_QUALITY, "gcwcnb",
+                "{\"status\":\"ok\",\"data\":{\"aqi\":40,\"iaqi\":{\"pm25\":{\"v\":40}},"
+                        + "\"time\":{\"iso\":\"2024-07-01T09:00:00+01:00\"}}}");
+        store.record(ProxyEndpoint.AIR_QUALITY, "gcwcnb",
+                "{\"status\":\"ok\",\"data\":{\"aqi\":60,\"iaqi\":{\"pm25\":{\"v\":\"-\"}},"
+                        + "\"time\":{\"iso\":\"2024-07-01T09:30:00+01:00\"}}}");
+        store.record(ProxyEndpoint.AIR_QUALITY, "gcwcnb",
+                "{\"status\":\"ok\",\"data\":{\"aqi\":20,\"time\":{\"iso\":\"2024-07-01T10:00:00+01:00\"}}}");
+        // Error responses and unreadable bodies are ignored
+        store.record(ProxyEndpoint.AIR_QUALITY, "gcwcnb", "{\"status\":\"error\",\"data\":\"Unknown station\"}");
+        store.record(ProxyEndpoint.AIR_QUALITY, "gcwcnb", "not json");
+
+        ConditionsStore.Observations readings = store.airQuality("gcwcnb", Duration.ofMinutes(10)).orElseThrow();
+        assertEquals(3, readings.raw().latest(10).times().length);
+
+        TimeSeries.Slice trend = readings.hourly().range(MIDNIGHT, MIDNIGHT + 86400);
+        assertArrayEquals(new long[]{MIDNIGHT + 8 * 3600, MIDNIGHT + 9 * 3600}, trend.times());
+        assertEquals(50, trend.values()[0][0], 1e-6);
+        assertEquals(40, trend.values()[1][0], 1e-6);
+        assertEquals(20, trend.values()[0][1], 1e-6);
+        assertTrue(Float.isNaN(trend.values()[1][1]));
+    }
+}
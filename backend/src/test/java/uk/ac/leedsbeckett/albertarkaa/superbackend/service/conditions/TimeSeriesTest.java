@@ -0,0 +1,44 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.conditions;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesTest {
+
+    // Test that samples in the same bucket are averaged per metric, leaving out missing values
+    @Test
+    void testAveragesSamplesInBucket() {
+        TimeSeries series = new TimeSeries(2, 4, 3600);
+        series.add(7200, new float[]{10, Float.NaN});
+        series.add(7200 + 600, new float[]{20, 5});
+        series.add(7200 + 3599, new float[]{30, Float.NaN});
+        series.add(10800, new float[]{1, 1});
+
+        TimeSeries.Slice slice = series.range(0, Long.MAX_VALUE);
+        assertArrayEquals(new long[]{7200, 10800}, slice.times());
+        assertEquals(20, slice.values()[0][0], 1e-6);
+        assertEquals(5, slice.values()[1][0], 1e-6);
+        assertEquals(1, slice.values()[0][1], 1e-6);
+    }
+
+    // Test that the oldest buckets are overwritten once the ring is full and reads stay in time order
+    @Test
+    void testOverwritesOldestBuckets() {
+        TimeSeries series = new TimeSeries(1, 3, 60);
+        for (int minute = 0; minute < 5; minute++) {
+            series.add(minute * 60L, new float[]{minute});
+        }
+        // A late sample for a bucket that has been overwritten is dropped
+        series.add(30, new float[]{99});
+        // A late sample for a bucket still held is added to it
+        series.add(150, new float[]{4});
+
+        TimeSeries.Slice all = series.latest(10);
+        assertArrayEquals(new long[]{120, 180, 240}, all.times());
+        assertEquals(3, all.values()[0][0], 1e-6);
+        assertArrayEquals(new long[]{180}, series.range(170, 200).times());
+        assertArrayEquals(new long[]{240}, series.latest(1).times());
+        assertTrue(series.range(0, 100).isEmpty());
+    }
+}
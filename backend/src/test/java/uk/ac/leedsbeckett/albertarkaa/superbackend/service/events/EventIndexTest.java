@@ -0,0 +1,76 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.model.ParkModel;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventIndexTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EventIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new EventIndex(Clock.fixed(Instant.parse("2024-07-01T12:00:00Z"), ZoneOffset.UTC));
+
+        List<JsonNode> events = new ArrayList<>();
+        // Listed out of start order, as later pages may overlap earlier ones
+        events.add(event("concert", "2024-07-02T19:00:00Z", "2024-07-02T22:00:00Z", 53.8005, -1.5480));
+        events.add(event("market", "2024-07-01T09:00:00Z", "2024-07-01T17:00:00Z", 53.7990, -1.5470));
+        events.add(event("finished", "2024-07-01T08:00:00Z", "2024-07-01T10:00:00Z", 53.7995, -1.5471));
+        events.add(event("roundhay", "2024-07-03T10:00:00Z", "2024-07-03T16:00:00Z", 53.8390, -1.4990));
+        // Events without a location cannot be placed and are left out
+        events.add(objectMapper.readTree("{\"id\":\"online\",\"start\":\"2024-07-01T18:00:00Z\"}"));
+
+        ParkModel cityPark = ParkModel.builder().id(1L).latitude(53.7996).longitude(-1.5471).build();
+        ParkModel roundhayPark = ParkModel.builder().id(2L).latitude(53.8380).longitude(-1.4985).build();
+        index.replace(events, List.of(cityPark, roundhayPark), 2414);
+    }
+
+    // Test that each park gets the events within its radius that have not ended, soonest first
+    @Test
+    void testJoinsEventsToParks() {
+        assertEquals(List.of("market", "concert"), ids(index.forPark(1L, 10).orElseThrow()));
+        assertEquals(List.of("roundhay"), ids(index.forPark(2L, 10).orElseThrow()));
+        assertEquals(List.of("market"), ids(index.forPark(1L, 1).orElseThrow()));
+        assertTrue(index.forPark(3L, 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    // Test that a location search only returns events within the radius
+    @Test
+    void testFindsEventsNearLocation() throws Exception {
+        assertEquals(List.of("market", "concert"), ids(index.near(53.7995, -1.5471, 500, 10)));
+        assertEquals(List.of("market", "concert", "roundhay"), ids(index.near(53.7995, -1.5471, 10_000, 10)));
+        assertTrue(index.near(53.9, -1.2, 1000, 10).isEmpty());
+
+        JsonNode response = objectMapper.readTree(EventIndex.toResponse(index.near(53.8390, -1.4990, 100, 5)));
+        assertEquals(1, response.path("count").asInt());
+        assertEquals("roundhay", response.path("results").path(0).path("id").asText());
+    }
+
+    private JsonNode event(String id, String start, String end, double lat, double lon) {
+        return objectMapper.createObjectNode().put("id", id).put("title", id).put("start", start).put("end", end)
+                .set("location", objectMapper.createArrayNode().add(lon).add(lat));
+    }
+
+    private List<String> ids(List<String> events) {
+        return events.stream().map(json -> {
+            try {
+                return objectMapper.readTree(json).path("id").asText();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+    }
+}
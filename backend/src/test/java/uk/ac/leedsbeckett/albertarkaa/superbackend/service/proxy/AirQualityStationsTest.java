@@ -0,0 +1,107 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AirQualityStationsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MutableClock clock = new MutableClock();
+
+    private AirQualityStations stations(String mode) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.air-quality.estimation.mode", mode);
+        environment.setConversionService(new ApplicationConversionService());
+        AirQualityStations stations = new AirQualityStations(environment, objectMapper, clock);
+        // Two stations about 2.2 km apart north to south
+        stations.record(reading(1, "Leeds Centre", 53.80, -1.55, 40, 40));
+        stations.record(reading(2, "Headingley", 53.82, -1.55, 80, 60));
+        return stations;
+    }
+
+    // Test that a location between two stations gets their readings weighted by inverse distance
+    @Test
+    void testInterpolatesBetweenStations() throws Exception {
+        AirQualityStations stations = stations("idw");
+
+        // A quarter of the way from Leeds Centre, so it has 9 times the weight of Headingley
+        JsonNode estimate = objectMapper.readTree(stations.estimate(53.805, -1.55).orElseThrow());
+        assertEquals("ok", estimate.path("status").asText());
+        assertTrue(estimate.path("data").path("estimated").asBoolean());
+        assertEquals(44, estimate.path("data").path("aqi").asInt());
+        assertEquals(42.0, estimate.path("data").path("iaqi").path("pm25").path("v").asDouble());
+        assertEquals(2, estimate.path("data").path("stations").size());
+        assertEquals(1, estimate.path("data").path("stations").path(0).path("idx").asInt());
+    }
+
+    // Test that nearest mode answers with the reading of the closest station
+    @Test
+    void testNearestStation() throws Exception {
+        JsonNode estimate = objectMapper.readTree(stations("nearest").estimate(53.818, -1.55).orElseThrow());
+
+        assertEquals(80, estimate.path("data").path("aqi").asInt());
+        assertEquals("Headingley", estimate.path("data").path("city").path("name").asText());
+    }
+
+    // Test that areas without enough fresh stations are left to upstream
+    @Test
+    void testLeavesUncoveredAreasToUpstream() {
+        AirQualityStations stations = stations("idw");
+
+        // Only one station is within 5 km of Wetherby and it is not close enough on its own
+        assertTrue(stations.estimate(53.85, -1.50).isEmpty());
+        // One station close by is enough
+        stations.record(reading(3, "Wetherby", 53.852, -1.50, 30, 30));
+        assertTrue(stations.estimate(53.85, -1.50).isPresent());
+
+        // Readings older than the maximum age are not used
+        clock.advance(Duration.ofMinutes(31));
+        assertTrue(stations.estimate(53.805, -1.55).isEmpty());
+
+        assertTrue(stations("off").estimate(53.805, -1.55).isEmpty());
+    }
+
+    private static String reading(int index, String name, double lat, double lon, int aqi, int pm25) {
+        return """
+                {"status":"ok","data":{"aqi":%d,"idx":%d,"dominentpol":"pm25",
+                  "city":{"geo":[%s,%s],"name":"%s"},"iaqi":{"pm25":{"v":%d},"no2":{"v":"-"}},
+                  "time":{"s":"2024-08-12 10:00:00","tz":"+01:00","iso":"2024-08-12T10:00:00+01:00"}}}
+                """.formatted(aqi, index, lat, lon, name, pm25);
+    }
+
+    // A clock that tests can move forward to age station readings
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-08-12T09:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
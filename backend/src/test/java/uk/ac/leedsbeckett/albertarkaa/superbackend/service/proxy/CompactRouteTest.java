@@ -0,0 +1,65 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRouteTest {
+
+    // Start on Park Lane, turn left into Oakwood Road and arrive
+    private static final String ROUTE = """
+            {"type":"FeatureCollection","features":[{"type":"Feature","properties":{
+              "segments":[{"distance":300.0,"duration":216.0,"steps":[
+                {"distance":100.0,"duration":72.0,"type":11,"instruction":"Head north on Park Lane","name":"Park Lane","way_points":[0,1]},
+                {"distance":200.0,"duration":144.0,"type":0,"instruction":"Turn left onto Oakwood Road","name":"Oakwood Road","way_points":[1,3]},
+                {"distance":0.0,"duration":0.0,"type":10,"instruction":"Arrive at Oakwood Road","name":"-","way_points":[3,3]}]}],
+              "summary":{"distance":300.0,"duration":216.0},"way_points":[0,3]},
+              "geometry":{"coordinates":[[-1.5,53.8],[-1.5,53.801],[-1.501,53.801],[-1.502,53.801]],"type":"LineString"}}]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Test that the rebuilt GeoJSON keeps the geometry and the step fields the app reads
+    @Test
+    void testGeoJsonRoundTrip() throws Exception {
+        CompactRoute route = CompactRoute.fromGeoJson(objectMapper.readTree(ROUTE));
+        JsonNode geoJson = objectMapper.readTree(route.toGeoJson(objectMapper));
+
+        JsonNode feature = geoJson.path("features").path(0);
+        assertEquals(4, feature.path("geometry").path("coordinates").size());
+        assertEquals(-1.501, feature.path("geometry").path("coordinates").path(2).path(0).asDouble(), 1e-9);
+        JsonNode segment = feature.path("properties").path("segments").path(0);
+        assertEquals(300.0, segment.path("distance").asDouble());
+        assertEquals("Turn left onto Oakwood Road", segment.path("steps").path(1).path("instruction").asText());
+        assertEquals(1, segment.path("steps").path(1).path("way_points").path(0).asInt());
+
+        // The stored form survives a JSON round trip and is smaller than the upstream response
+        String stored = objectMapper.writeValueAsString(route);
+        assertEquals(route.polyline(), objectMapper.readValue(stored, CompactRoute.class).polyline());
+        assertTrue(stored.length() < ROUTE.length());
+    }
+
+    // Test that turning a route around mirrors the turns and keeps each step on its street
+    @Test
+    void testReversed() throws Exception {
+        CompactRoute route = CompactRoute.fromGeoJson(objectMapper.readTree(ROUTE));
+        assertTrue(route.isReversible());
+
+        CompactRoute reversed = route.reversed();
+        List<CompactRoute.Step> steps = reversed.steps();
+
+        assertEquals(3, steps.size());
+        assertEquals(11, steps.get(0).type());
+        assertEquals("Head east on Oakwood Road", steps.get(0).instruction());
+        assertArrayEquals(new int[]{0, 2}, steps.get(0).wayPoints());
+        assertEquals(1, steps.get(1).type());
+        assertEquals("Turn right onto Park Lane", steps.get(1).instruction());
+        assertArrayEquals(new int[]{2, 3}, steps.get(1).wayPoints());
+        assertEquals(10, steps.get(2).type());
+        assertEquals(route.polyline(), reversed.reversed().polyline());
+    }
+}
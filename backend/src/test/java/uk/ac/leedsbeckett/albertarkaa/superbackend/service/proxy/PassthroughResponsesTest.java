@@ -0,0 +1,95 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PassthroughResponsesTest {
+
+    private static final MediaType AUDIO_MPEG = MediaType.parseMediaType("audio/mpeg");
+
+    // Test that the whole body is streamed with the upstream content type and length
+    @Test
+    void testStreamsWholeBody() throws IOException {
+        ResponseEntity<StreamingResponseBody> response =
+                PassthroughResponses.streamRange(upstream("0123", "4567", "89"), null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(AUDIO_MPEG, response.getHeaders().getContentType());
+        assertEquals(10, response.getHeaders().getContentLength());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("0123456789", write(response));
+    }
+
+    // Test that a byte range spanning several upstream buffers is cut out of the stream
+    @Test
+    void testStreamsRequestedRange() throws IOException {
+        ResponseEntity<StreamingResponseBody> response =
+                PassthroughResponses.streamRange(upstream("0123", "4567", "89"), "bytes=2-6");
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals(5, response.getHeaders().getContentLength());
+        assertEquals("bytes 2-6/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("23456", write(response));
+
+        ResponseEntity<StreamingResponseBody> suffix =
+                PassthroughResponses.streamRange(upstream("0123", "4567", "89"), "bytes=-3");
+        assertEquals("bytes 7-9/10", suffix.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("789", write(suffix));
+    }
+
+    // Test that a range past the end of the body is rejected
+    @Test
+    void testRejectsUnsatisfiableRange() {
+        ResponseEntity<StreamingResponseBody> response =
+                PassthroughResponses.streamRange(upstream("0123"), "bytes=10-");
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */4", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    // Test that a range of a stored file is copied from the file channel
+    @Test
+    void testServesFileRange(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("clip.mpeg"), "0123456789");
+
+        ResponseEntity<StreamingResponseBody> response =
+                PassthroughResponses.file(file, AUDIO_MPEG, 10, "bytes=3-");
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 3-9/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("3456789", write(response));
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> upstream(String... chunks) {
+        DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+        int length = 0;
+        for (String chunk : chunks) {
+            length += chunk.length();
+        }
+        Flux<DataBuffer> body = Flux.fromArray(chunks)
+                .map(chunk -> factory.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+        return ResponseEntity.ok().contentType(AUDIO_MPEG).contentLength(length).body(body);
+    }
+
+    private String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
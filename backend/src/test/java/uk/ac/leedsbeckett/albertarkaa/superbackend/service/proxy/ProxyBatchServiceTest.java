@@ -0,0 +1,64 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.request.proxy.ProxyBatchItem;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.dto.response.ProxyBatchResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class ProxyBatchServiceTest {
+
+    @Mock
+    private ApiProxyService apiProxyService;
+
+    @InjectMocks
+    private ProxyBatchService proxyBatchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(proxyBatchService, "concurrency", 4);
+    }
+
+    // Test that each sub-request is dispatched to its endpoint and failures are reported per item
+    @Test
+    void testExecutesEachSubRequest() {
+        when(apiProxyService.getWeather(53.84, -1.49)).thenReturn(Mono.just(ResponseEntity.ok("{\"current\":{}}")));
+        when(apiProxyService.getAirQuality(53.84, -1.49))
+                .thenReturn(Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("quota exceeded")));
+
+        List<ProxyBatchItem> items = List.of(
+                new ProxyBatchItem("w", "weather", Map.of("lat", "53.84", "lon", "-1.49")),
+                new ProxyBatchItem("a", "air-quality", Map.of("lat", "53.84", "lon", "-1.49")),
+                new ProxyBatchItem("x", "unknown", Map.of()),
+                new ProxyBatchItem("p", "points-of-interest", Map.of("latitude", "north")));
+
+        Map<String, ProxyBatchResult> results = proxyBatchService.execute(items)
+                .collectList()
+                .block()
+                .stream()
+                .collect(Collectors.toMap(ProxyBatchResult::getId, Function.identity()));
+
+        assertEquals(200, results.get("w").getStatus());
+        assertEquals("{\"current\":{}}", results.get("w").getBody());
+        assertEquals(429, results.get("a").getStatus());
+        assertEquals("quota exceeded", results.get("a").getError());
+        assertEquals(400, results.get("x").getStatus());
+        assertEquals(400, results.get("p").getStatus());
+        assertNull(results.get("p").getBody());
+    }
+}
@@ -0,0 +1,195 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProxyCacheServiceTest {
+
+    private ProxyCacheService proxyCacheService;
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.cache.weather.ttl", "10m")
+                .withProperty("proxy.cache.stale-while-revalidate", "5m")
+                .withProperty("proxy.cache.stale-if-error", "1h");
+        environment.setConversionService(new ApplicationConversionService());
+        proxyCacheService = new ProxyCacheService(environment, clock);
+    }
+
+    // Test that a second request for the same key is served from the cache without calling upstream
+    @Test
+    void testCachesResolvedBody() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "53.84--1.49", () -> {
+                        upstreamCalls.incrementAndGet();
+                        return Mono.just("{\"current\":{}}");
+                    }))
+                    .expectNext("{\"current\":{}}")
+                    .verifyComplete();
+        }
+
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    // Test that failed upstream calls are not cached
+    @Test
+    void testDoesNotCacheErrors() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.AIR_QUALITY, "key", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.error(new IllegalStateException("upstream down"));
+                }))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.AIR_QUALITY, "key", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just("{}");
+                }))
+                .expectNext("{}")
+                .verifyComplete();
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    // Test that each endpoint has its own cache
+    @Test
+    void testEndpointsDoNotShareEntries() {
+        proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "key", () -> Mono.just("weather")).block();
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.AIR_QUALITY, "key", () -> Mono.just("aqi")))
+                .expectNext("aqi")
+                .verifyComplete();
+    }
+
+    // Test that concurrent misses for the same key share a single upstream call
+    @Test
+    void testCoalescesConcurrentMisses() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        List<String> bodies = Flux.range(0, 20)
+                .flatMap(i -> proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just("{}").delayElement(Duration.ofMillis(100));
+                }))
+                .collectList()
+                .block();
+
+        assertEquals(20, bodies.size());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    // Test that an interactive request joining a background call that runs out of background quota is not refused,
+    // but calls upstream again in its own lane
+    @Test
+    void testInteractiveCallerRetriesBackgroundQuotaError() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Sinks.One<String> release = Sinks.one();
+        Supplier<Mono<String>> upstream = () -> Mono.deferContextual(context -> {
+            upstreamCalls.incrementAndGet();
+            QuotaLane lane = context.getOrDefault(QuotaLane.class, QuotaLane.INTERACTIVE);
+            return lane == QuotaLane.BACKGROUND
+                    ? release.asMono().then(Mono.error(new QuotaExceededException(UpstreamProvider.WAQI, lane)))
+                    : Mono.just("interactive");
+        });
+
+        Mono<String> background = proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", upstream)
+                .contextWrite(QuotaLane.BACKGROUND.asContext());
+        StepVerifier.create(Flux.merge(background.onErrorReturn("refused"),
+                        proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", upstream)
+                                .doOnSubscribe(subscription -> release.tryEmitValue("done"))))
+                .expectNext("refused", "interactive")
+                .verifyComplete();
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    // Test that an expired entry is served immediately while a single background call refreshes it
+    @Test
+    void testServesStaleWhileRevalidating() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", () -> Mono.just("old")).block();
+
+        clock.advance(Duration.ofMinutes(12));
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just("new");
+                }))
+                .expectNext("old")
+                .verifyComplete();
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", () -> Mono.just("newer")))
+                .expectNext("new")
+                .verifyComplete();
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    // Test that an entry past the revalidation window is still served when the upstream call fails
+    @Test
+    void testServesStaleIfError() {
+        proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf", () -> Mono.just("old")).block();
+
+        clock.advance(Duration.ofMinutes(30));
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf",
+                        () -> Mono.error(new IllegalStateException("upstream down"))))
+                .expectNext("old")
+                .verifyComplete();
+
+        clock.advance(Duration.ofHours(1));
+
+        StepVerifier.create(proxyCacheService.getOrFetch(ProxyEndpoint.WEATHER, "gcwf",
+                        () -> Mono.error(new IllegalStateException("upstream down"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    // A clock that tests can move forward to age cache entries
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-08-12T09:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
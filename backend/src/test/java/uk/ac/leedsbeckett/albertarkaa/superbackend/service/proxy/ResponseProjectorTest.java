@@ -0,0 +1,148 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseProjectorTest {
+
+    // 2024-07-01 10:30 UTC, so the 10:00 hour is the first one kept
+    private static final Instant NOW = Instant.parse("2024-07-01T10:30:00Z");
+    private static final long MIDNIGHT = Instant.parse("2024-07-01T00:00:00Z").getEpochSecond();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ResponseProjector projector(int hours) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.compact.weather.hours", String.valueOf(hours));
+        environment.setConversionService(new ApplicationConversionService());
+        return new ResponseProjector(objectMapper, environment, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    // Test that the compact forecast keeps the fields the app reads, drops the hourly arrays and lists the next hours
+    @Test
+    void testProjectsWeather() throws Exception {
+        String upstream = weatherResponse(7).toString();
+
+        String compact = projector(6).weather(stream(upstream));
+        JsonNode root = objectMapper.readTree(compact);
+
+        assertEquals(21.5, root.path("current").path("temp_c").asDouble());
+        assertEquals("Sunny", root.path("current").path("condition").path("text").asText());
+        assertFalse(root.path("current").has("heatindex_c"));
+        assertEquals("Leeds", root.path("location").path("name").asText());
+
+        JsonNode days = root.path("forecast").path("forecastday");
+        assertEquals(7, days.size());
+        assertEquals(24.0, days.path(0).path("day").path("maxtemp_c").asDouble());
+        assertEquals("Cloudy", days.path(0).path("day").path("condition").path("text").asText());
+        assertEquals("05:00 AM", days.path(0).path("astro").path("sunrise").asText());
+        assertFalse(days.path(0).has("hour"));
+        assertFalse(days.path(0).path("astro").has("moon_phase"));
+
+        JsonNode hours = root.path("hours");
+        assertEquals(6, hours.size());
+        assertEquals(MIDNIGHT + 10 * 3600, hours.path(0).path("time_epoch").asLong());
+        assertFalse(hours.path(0).has("dewpoint_c"));
+
+        // A week of hourly data is where the bulk of the upstream response is
+        assertTrue(compact.length() * 10 < upstream.length(),
+                "compact " + compact.length() + " bytes, upstream " + upstream.length() + " bytes");
+    }
+
+    // Test that the compact air quality keeps the index and readings but not the attributions or forecast
+    @Test
+    void testProjectsAirQuality() throws Exception {
+        String upstream = """
+                {"status":"ok","data":{"aqi":42,"idx":7933,
+                  "attributions":[{"url":"https://uk-air.defra.gov.uk/","name":"UK-AIR"}],
+                  "city":{"geo":[53.8,-1.5],"name":"Leeds Centre","url":"https://aqicn.org/city/leeds","location":""},
+                  "dominentpol":"pm25","iaqi":{"pm25":{"v":42},"no2":{"v":12.1}},
+                  "time":{"s":"2024-07-01 10:00:00","tz":"+01:00","v":1719828000},
+                  "forecast":{"daily":{"pm25":[{"avg":40,"day":"2024-07-01","max":50,"min":30}]}},
+                  "debug":{"sync":"2024-07-01T19:00:00+09:00"}}}
+                """;
+
+        JsonNode root = objectMapper.readTree(projector(24).airQuality(stream(upstream)));
+
+        assertEquals("ok", root.path("status").asText());
+        assertEquals(42, root.path("data").path("aqi").asInt());
+        assertEquals(12.1, root.path("data").path("iaqi").path("no2").path("v").asDouble());
+        assertEquals("Leeds Centre", root.path("data").path("city").path("name").asText());
+        assertFalse(root.path("data").path("city").has("url"));
+        assertFalse(root.path("data").has("forecast"));
+        assertFalse(root.path("data").has("attributions"));
+        assertFalse(root.path("data").has("debug"));
+        assertFalse(root.path("data").has("estimated"));
+    }
+
+    // Test that an air quality reading estimated from nearby stations keeps its mark and the stations it used
+    @Test
+    void testKeepsEstimatedAirQuality() throws Exception {
+        String estimate = """
+                {"status":"ok","data":{"aqi":35,"estimated":true,"iaqi":{"pm25":{"v":35.0}},
+                  "city":{"name":"Estimated from 2 stations","geo":[53.81,-1.52]},
+                  "stations":[{"idx":7933,"name":"Leeds Centre","distance":1200},
+                              {"idx":7934,"name":"Leeds Headingley","distance":1800}]}}
+                """;
+
+        JsonNode data = objectMapper.readTree(projector(24).airQuality(stream(estimate))).path("data");
+
+        assertTrue(data.path("estimated").asBoolean());
+        assertEquals(2, data.path("stations").size());
+        assertEquals("Leeds Centre", data.path("stations").path(0).path("name").asText());
+    }
+
+    private ObjectNode weatherResponse(int days) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.putObject("location").put("name", "Leeds").put("lat", 53.8).put("lon", -1.5)
+                .put("tz_id", "Europe/London").put("localtime_epoch", NOW.getEpochSecond());
+        ObjectNode current = root.putObject("current").put("temp_c", 21.5).put("feelslike_c", 21.0)
+                .put("heatindex_c", 22.3).put("wind_kph", 9.4).put("humidity", 60).put("uv", 5.0);
+        current.putObject("condition").put("text", "Sunny").put("icon", "//cdn.weatherapi.com/113.png").put("code", 1000);
+
+        ArrayNode forecastDays = root.putObject("forecast").putArray("forecastday");
+        for (int day = 0; day < days; day++) {
+            long dayStart = MIDNIGHT + day * 86400L;
+            ObjectNode forecastDay = forecastDays.addObject().put("date", "2024-07-0" + (day + 1))
+                    .put("date_epoch", dayStart);
+            ObjectNode summary = forecastDay.putObject("day").put("maxtemp_c", 24.0).put("mintemp_c", 13.0)
+                    .put("avgtemp_c", 18.2).put("totalprecip_in", 0.0).put("avgvis_km", 10.0);
+            summary.putObject("condition").put("text", "Cloudy").put("icon", "//cdn.weatherapi.com/119.png");
+            forecastDay.putObject("astro").put("sunrise", "05:00 AM").put("sunset", "09:40 PM")
+                    .put("moon_phase", "Waning Crescent");
+            ArrayNode hours = forecastDay.putArray("hour");
+            for (int hour = 0; hour < 24; hour++) {
+                ObjectNode entry = hours.addObject().put("time_epoch", dayStart + hour * 3600L)
+                        .put("time", "2024-07-0" + (day + 1) + " " + hour + ":00")
+                        .put("temp_c", 15.0 + hour % 8).put("temp_f", 59.0).put("is_day", 1)
+                        .put("wind_mph", 5.2).put("wind_kph", 8.4).put("wind_degree", 240).put("wind_dir", "WSW")
+                        .put("pressure_mb", 1016.0).put("pressure_in", 30.0).put("precip_mm", 0.0)
+                        .put("precip_in", 0.0).put("humidity", 70).put("cloud", 40).put("feelslike_c", 15.0)
+                        .put("feelslike_f", 59.0).put("windchill_c", 15.0).put("heatindex_c", 15.0)
+                        .put("dewpoint_c", 9.7).put("will_it_rain", 0).put("chance_of_rain", 10)
+                        .put("will_it_snow", 0).put("chance_of_snow", 0).put("vis_km", 10.0).put("gust_kph", 14.2)
+                        .put("uv", 4.0);
+                entry.putObject("condition").put("text", "Partly cloudy")
+                        .put("icon", "//cdn.weatherapi.com/weather/64x64/day/116.png").put("code", 1003);
+            }
+        }
+        return root;
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
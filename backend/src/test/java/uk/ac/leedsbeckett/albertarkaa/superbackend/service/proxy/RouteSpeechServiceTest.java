@@ -0,0 +1,133 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MultiValueMap;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RouteSpeechServiceTest {
+
+    private static final String ROUTE = """
+            {"type":"FeatureCollection","features":[{"properties":{"segments":[{"steps":[
+              {"instruction":"Head north on Park Lane"},
+              {"instruction":"Turn left"},
+              {"instruction":"Turn left"},
+              {"instruction":"Arrive at Roundhay Park"}]}]}}]}
+            """;
+
+    @Mock
+    private ApiProxyService apiProxyService;
+
+    @Mock
+    private SpeechAudioStore speechAudioStore;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @InjectMocks
+    private RouteSpeechService routeSpeechService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(routeSpeechService, "concurrency", 2);
+        ReflectionTestUtils.setField(routeSpeechService, "maxSteps", 100);
+        when(speechAudioStore.isEnabled()).thenReturn(true);
+        when(apiProxyService.getSpeechClip(anyString()))
+                .thenAnswer(invocation -> Mono.just(clip(invocation.getArgument(0))));
+        when(apiProxyService.openSpeechClip(anyString()))
+                .thenAnswer(invocation -> Mono.just(openClip(invocation.getArgument(0))));
+    }
+
+    // Test that the step instructions are read from the GeoJSON directions response in order
+    @Test
+    void testExtractsInstructions() {
+        assertEquals(List.of("Head north on Park Lane", "Turn left", "Turn left", "Arrive at Roundhay Park"),
+                routeSpeechService.extractInstructions(ROUTE));
+        assertEquals(List.of(), routeSpeechService.extractInstructions("not json"));
+    }
+
+    // Test that fetching directions synthesises each distinct instruction that is not stored yet
+    @Test
+    void testPresynthesisesMissingInstructions() {
+        when(apiProxyService.getDirections("a", "b", "foot-walking")).thenReturn(Mono.just(ResponseEntity.ok(ROUTE)));
+        when(speechAudioStore.contains("Turn left")).thenReturn(true);
+
+        routeSpeechService.getDirections("a", "b", "foot-walking", true).block();
+
+        verify(apiProxyService, times(1)).getSpeechClip("Head north on Park Lane");
+        verify(apiProxyService, times(1)).getSpeechClip("Arrive at Roundhay Park");
+        verify(apiProxyService, never()).getSpeechClip("Turn left");
+    }
+
+    // Test that the route audio has one part per step in route order, each read in full from its open clip even
+    // after the clip has been evicted, with a repeated step sharing one clip
+    @Test
+    void testReturnsOnePartPerStep() throws IOException {
+        when(apiProxyService.getDirections("a", "b", "foot-walking")).thenReturn(Mono.just(ResponseEntity.ok(ROUTE)));
+
+        ResponseEntity<MultiValueMap<String, Object>> response =
+                routeSpeechService.getRouteAudio("a", "b", "foot-walking").block();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+
+        assertEquals(MediaType.MULTIPART_MIXED, response.getHeaders().getContentType());
+        assertEquals(List.of("step-0", "step-1", "step-2", "step-3"), List.copyOf(response.getBody().keySet()));
+        verify(apiProxyService, times(1)).openSpeechClip("Turn left");
+        List<String> audio = new ArrayList<>();
+        for (List<Object> part : response.getBody().values()) {
+            Resource body = (Resource) ((HttpEntity<?>) part.get(0)).getBody();
+            try (InputStream input = body.getInputStream()) {
+                audio.add(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(List.of("Head north on Park Lane", "Turn left", "Turn left", "Arrive at Roundhay Park"), audio);
+    }
+
+    private OpenClip openClip(String instruction) throws IOException {
+        byte[] audio = instruction.getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(directory.resolve(SpeechAudioStore.hash(instruction) + ".mpeg"), audio);
+        return new OpenClip(FileChannel.open(file, StandardOpenOption.READ), MediaType.parseMediaType("audio/mpeg"),
+                audio.length);
+    }
+
+    private StoredClip clip(String instruction) {
+        return new StoredClip(Path.of(SpeechAudioStore.hash(instruction) + ".mpeg"),
+                MediaType.parseMediaType("audio/mpeg"), 10);
+    }
+}
@@ -0,0 +1,169 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpeechAudioStoreTest {
+
+    @TempDir
+    Path directory;
+
+    // Test that a phrase is downloaded once and then served from disk, whatever its case and spacing
+    @Test
+    void testStoresNormalisedPhrase() throws IOException {
+        SpeechAudioStore store = new SpeechAudioStore(environment("1MB"));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        StoredClip first = store.getOrFetch("Turn left", upstream("left-audio", upstreamCalls)).block();
+        StoredClip second = store.getOrFetch("  turn   LEFT ", upstream("left-audio", upstreamCalls)).block();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(first.path(), second.path());
+        assertEquals("audio/mpeg", second.contentType().toString());
+        assertEquals("left-audio", Files.readString(second.path()));
+        assertTrue(store.contains("TURN LEFT"));
+    }
+
+    // Test that the least recently used clips are deleted when the store grows past its cap
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        SpeechAudioStore store = new SpeechAudioStore(environment("20B"));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        StoredClip left = store.getOrFetch("Turn left", upstream("0123456789", upstreamCalls)).block();
+        store.getOrFetch("Turn right", upstream("0123456789", upstreamCalls)).block();
+        store.getOrFetch("Turn left", upstream("0123456789", upstreamCalls)).block();
+        store.getOrFetch("Continue straight", upstream("0123456789", upstreamCalls)).block();
+
+        assertTrue(store.contains("Turn left"));
+        assertFalse(store.contains("Turn right"));
+        assertTrue(Files.exists(left.path()));
+    }
+
+    // Test that clips written by an earlier run are found again and unfinished downloads are removed
+    @Test
+    void testReloadsIndexFromDisk() throws IOException {
+        new SpeechAudioStore(environment("1MB"))
+                .getOrFetch("Turn left", upstream("left-audio", new AtomicInteger())).block();
+        Path leftover = Files.writeString(directory.resolve(SpeechAudioStore.hash("Turn right") + ".tmp"), "partial");
+
+        SpeechAudioStore reloaded = new SpeechAudioStore(environment("1MB"));
+
+        assertTrue(reloaded.contains("Turn left"));
+        assertFalse(Files.exists(leftover));
+    }
+
+    // Test that a cache directory that cannot be created disables the store instead of failing
+    @Test
+    void testDisablesStoreWithUnusableDirectory() throws IOException {
+        Path file = Files.writeString(directory.resolve("not-a-directory"), "");
+        MockEnvironment environment = environment("1MB")
+                .withProperty("proxy.speech-cache.directory", file.resolve("speech").toString());
+
+        assertFalse(new SpeechAudioStore(environment).isEnabled());
+    }
+
+    // Test that an open clip can still be read to the end after it is evicted, and that the next request for it
+    // downloads it again
+    @Test
+    void testOpenClipOutlivesEviction() throws IOException {
+        SpeechAudioStore store = new SpeechAudioStore(environment("10B"));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        OpenClip left = store.open("Turn left", upstream("0123456789", upstreamCalls)).block();
+        store.getOrFetch("Turn right", upstream("9876543210", upstreamCalls)).block();
+        assertFalse(store.contains("Turn left"));
+
+        try (FileChannel channel = left.channel()) {
+            ByteBuffer bytes = ByteBuffer.allocate(10);
+            assertEquals(10, channel.read(bytes));
+            assertEquals("0123456789", new String(bytes.array(), StandardCharsets.UTF_8));
+        }
+        store.open("Turn left", upstream("0123456789", upstreamCalls)).block().channel().close();
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    // Test that an interactive request joining a background download that runs out of background quota is not
+    // refused, but downloads the clip again in its own lane
+    @Test
+    void testInteractiveCallerRetriesBackgroundQuotaError() {
+        SpeechAudioStore store = new SpeechAudioStore(environment("1MB"));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Sinks.One<String> release = Sinks.one();
+        Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> interactive = upstream("left-audio", upstreamCalls);
+        Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> upstream = () -> Mono.deferContextual(context -> {
+            QuotaLane lane = context.getOrDefault(QuotaLane.class, QuotaLane.INTERACTIVE);
+            if (lane == QuotaLane.BACKGROUND) {
+                upstreamCalls.incrementAndGet();
+                return release.asMono().then(Mono.error(new QuotaExceededException(UpstreamProvider.VOICE_RSS, lane)));
+            }
+            return interactive.get();
+        });
+
+        Mono<String> background = store.getOrFetch("Turn left", upstream)
+                .map(clip -> "stored")
+                .contextWrite(QuotaLane.BACKGROUND.asContext());
+        StepVerifier.create(Flux.merge(background.onErrorReturn("refused"),
+                        store.getOrFetch("Turn left", upstream)
+                                .map(clip -> "stored")
+                                .doOnSubscribe(subscription -> release.tryEmitValue("done"))))
+                .expectNext("refused", "stored")
+                .verifyComplete();
+        assertEquals(2, upstreamCalls.get());
+        assertTrue(store.contains("Turn left"));
+    }
+
+    // Test that a text body is not stored as a clip
+    @Test
+    void testRejectsNonAudioResponse() {
+        SpeechAudioStore store = new SpeechAudioStore(environment("1MB"));
+        Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> error = () -> Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("ERROR".getBytes()))));
+
+        assertTrue(store.getOrFetch("Turn left", error).onErrorResume(e -> Mono.empty()).blockOptional().isEmpty());
+        assertFalse(store.contains("Turn left"));
+    }
+
+    private MockEnvironment environment(String maxSize) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.speech-cache.directory", directory.toString())
+                .withProperty("proxy.speech-cache.max-size", maxSize);
+        environment.setConversionService(new ApplicationConversionService());
+        return environment;
+    }
+
+    private Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> upstream(String audio, AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            byte[] bytes = audio.getBytes(StandardCharsets.UTF_8);
+            return Mono.just(ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("audio/mpeg"))
+                    .contentLength(bytes.length)
+                    .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes))));
+        };
+    }
+}
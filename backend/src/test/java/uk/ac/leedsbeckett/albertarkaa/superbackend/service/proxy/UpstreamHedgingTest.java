@@ -0,0 +1,56 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UpstreamHedgingTest {
+
+    private UpstreamHedging upstreamHedging;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.hedging.weatherapi.enabled", "true")
+                .withProperty("proxy.hedging.min-samples", "5")
+                .withProperty("proxy.hedging.budget-percent", "100");
+        environment.setConversionService(new ApplicationConversionService());
+        upstreamHedging = new UpstreamHedging(environment);
+    }
+
+    // Test that a request slower than usual is hedged and the faster attempt wins
+    @Test
+    void testHedgesSlowRequest() {
+        for (int i = 0; i < 5; i++) {
+            upstreamHedging.hedge(UpstreamProvider.WEATHER_API, Mono.just("fast")).block();
+        }
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() == 1
+                ? Mono.just("slow").delayElement(Duration.ofSeconds(5))
+                : Mono.just("hedged"));
+
+        assertEquals("hedged", upstreamHedging.hedge(UpstreamProvider.WEATHER_API, call).block(Duration.ofSeconds(2)));
+        assertEquals(2, attempts.get());
+    }
+
+    // Test that providers without hedging enabled are called once
+    @Test
+    void testDisabledProviderIsNotHedged() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("slow").delayElement(Duration.ofMillis(200));
+        });
+
+        assertEquals("slow", upstreamHedging.hedge(UpstreamProvider.WAQI, call).block());
+        assertEquals(1, attempts.get());
+    }
+}
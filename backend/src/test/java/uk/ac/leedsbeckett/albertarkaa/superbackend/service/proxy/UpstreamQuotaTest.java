@@ -0,0 +1,94 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UpstreamQuotaTest {
+
+    private MockEnvironment environment;
+
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment()
+                .withProperty("WEATHER_API_KEY", "weather-key")
+                .withProperty("AIRQUALITY_API_KEY", "waqi-key")
+                .withProperty("OPENROUTE_API_KEY", "ors-key")
+                .withProperty("VOICERSS_API_KEY", "voice-key")
+                .withProperty("PREDICTHQ_API_KEY", "phq-key")
+                .withProperty("proxy.quota.waqi.capacity", "10")
+                .withProperty("proxy.quota.waqi.refill-period", "PT1M")
+                .withProperty("proxy.quota.background-reserve", "0.5");
+        environment.setConversionService(new ApplicationConversionService());
+    }
+
+    // Test that background requests stop at the reserve while interactive requests can spend the rest
+    @Test
+    void testBackgroundLaneYieldsToInteractive() {
+        UpstreamQuota quota = new UpstreamQuota(environment, new SimpleMeterRegistry(), fixedClock());
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(call(quota, UpstreamProvider.WAQI).contextWrite(QuotaLane.BACKGROUND.asContext()))
+                    .expectNext("waqi-key")
+                    .verifyComplete();
+        }
+        StepVerifier.create(call(quota, UpstreamProvider.WAQI).contextWrite(QuotaLane.BACKGROUND.asContext()))
+                .expectError(QuotaExceededException.class)
+                .verify();
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(call(quota, UpstreamProvider.WAQI)).expectNext("waqi-key").verifyComplete();
+        }
+        StepVerifier.create(call(quota, UpstreamProvider.WAQI))
+                .expectError(QuotaExceededException.class)
+                .verify();
+
+        // Providers without a configured capacity are not limited
+        StepVerifier.create(call(quota, UpstreamProvider.WEATHER_API)).expectNext("weather-key").verifyComplete();
+    }
+
+    // Test that requests are spread across keys and that a key throttled upstream is skipped
+    @Test
+    void testRotatesKeysAndDrainsThrottledKey() {
+        environment.withProperty("proxy.quota.waqi.keys", "first,second");
+        UpstreamQuota quota = new UpstreamQuota(environment, new SimpleMeterRegistry(), fixedClock());
+
+        List<String> used = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            used.add(call(quota, UpstreamProvider.WAQI).block());
+        }
+        assertEquals(2, used.stream().filter("first"::equals).count());
+        assertEquals(2, used.stream().filter("second"::equals).count());
+
+        // The first key answers 429, so its bucket is drained and the request is retried with the second key
+        StepVerifier.create(quota.withKey(UpstreamProvider.WAQI, key -> key.equals("first")
+                        ? Mono.error(WebClientResponseException.create(HttpStatus.TOO_MANY_REQUESTS.value(),
+                                "Too Many Requests", null, null, null))
+                        : Mono.just(key)))
+                .expectNext("second")
+                .verifyComplete();
+        assertEquals(0, quota.available(UpstreamProvider.WAQI, 0));
+    }
+
+    private Mono<String> call(UpstreamQuota quota, UpstreamProvider provider) {
+        return quota.withKey(provider, Mono::just);
+    }
+
+    private Clock fixedClock() {
+        return Clock.fixed(Instant.parse("2024-06-01T12:00:00Z"), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,87 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UpstreamResilienceTest {
+
+    private UpstreamResilience upstreamResilience;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("proxy.resilience.sliding-window-size", "4")
+                .withProperty("proxy.resilience.minimum-number-of-calls", "4");
+        environment.setConversionService(new ApplicationConversionService());
+        upstreamResilience = new UpstreamResilience(environment, new SimpleMeterRegistry());
+    }
+
+    // Test that repeated server errors open the breaker and later calls fail fast without reaching upstream
+    @Test
+    void testOpensAfterServerErrors() {
+        for (int i = 0; i < 4; i++) {
+            callWithStatus(UpstreamProvider.OPENROUTE_SERVICE, HttpStatus.BAD_GATEWAY);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, upstreamResilience.getState(UpstreamProvider.OPENROUTE_SERVICE));
+
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        StepVerifier.create(upstreamResilience.protect(UpstreamProvider.OPENROUTE_SERVICE,
+                        Mono.fromCallable(upstreamCalls::incrementAndGet)))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+        assertEquals(0, upstreamCalls.get());
+
+        // Other providers are not affected
+        assertEquals(CircuitBreaker.State.CLOSED, upstreamResilience.getState(UpstreamProvider.WEATHER_API));
+    }
+
+    // Test that client errors do not count against the provider
+    @Test
+    void testIgnoresClientErrors() {
+        for (int i = 0; i < 4; i++) {
+            callWithStatus(UpstreamProvider.WAQI, HttpStatus.BAD_REQUEST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, upstreamResilience.getState(UpstreamProvider.WAQI));
+    }
+
+    // Test that our own quota and bulkhead limits are left out of the breaker's window instead of counting as
+    // successful provider calls
+    @Test
+    void testIgnoresOwnLimits() {
+        callWithStatus(UpstreamProvider.VOICE_RSS, HttpStatus.BAD_GATEWAY);
+        StepVerifier.create(upstreamResilience.protect(UpstreamProvider.VOICE_RSS,
+                        Mono.error(new QuotaExceededException(UpstreamProvider.VOICE_RSS, QuotaLane.BACKGROUND))))
+                .expectError(QuotaExceededException.class)
+                .verify();
+        StepVerifier.create(upstreamResilience.protect(UpstreamProvider.VOICE_RSS,
+                        Mono.error(BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("test")))))
+                .expectError(BulkheadFullException.class)
+                .verify();
+
+        CircuitBreaker.Metrics metrics = upstreamResilience.getMetrics(UpstreamProvider.VOICE_RSS);
+        assertEquals(1, metrics.getNumberOfBufferedCalls());
+        assertEquals(0, metrics.getNumberOfSuccessfulCalls());
+    }
+
+    private void callWithStatus(UpstreamProvider provider, HttpStatus status) {
+        StepVerifier.create(upstreamResilience.protect(provider, Mono.error(
+                        WebClientResponseException.create(status.value(), status.getReasonPhrase(), null, null, null))))
+                .expectError(WebClientResponseException.class)
+                .verify();
+    }
+}
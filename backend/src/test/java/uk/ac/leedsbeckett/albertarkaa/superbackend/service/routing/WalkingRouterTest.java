@@ -0,0 +1,117 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.service.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.leedsbeckett.albertarkaa.superbackend.service.proxy.CompactRoute;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalkingRouterTest {
+
+    // Park Lane runs north with Oakwood Road leaving it to the west, a motorway that must not be walked cuts the
+    // corner, a long footpath goes round it and Island Path is not connected to anything
+    private static final String GRAPH = """
+            {"type":"FeatureCollection","features":[
+              {"type":"Feature","properties":{"highway":"residential","name":"Park Lane"},
+               "geometry":{"type":"LineString","coordinates":[[-1.5,53.8],[-1.5,53.801],[-1.5,53.802]]}},
+              {"type":"Feature","properties":{"highway":"residential","name":"Oakwood Road"},
+               "geometry":{"type":"LineString","coordinates":[[-1.5,53.801],[-1.501,53.801],[-1.502,53.801]]}},
+              {"type":"Feature","properties":{"highway":"motorway","name":"M1"},
+               "geometry":{"type":"LineString","coordinates":[[-1.5,53.8],[-1.502,53.801]]}},
+              {"type":"Feature","properties":{"highway":"footway"},
+               "geometry":{"type":"MultiLineString","coordinates":[[[-1.5,53.8],[-1.51,53.8],[-1.502,53.801]]]}},
+              {"type":"Feature","properties":{"highway":"footway","name":"Island Path"},
+               "geometry":{"type":"LineString","coordinates":[[-1.5,53.81],[-1.5,53.811]]}}
+            ]}
+            """;
+
+    @TempDir
+    Path directory;
+
+    private WalkingRouter router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = directory.resolve("paths.geojson");
+        Files.writeString(file, GRAPH);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("routing.graph.path", file.toString());
+        environment.setConversionService(new ApplicationConversionService());
+        router = new WalkingRouter(environment, new ObjectMapper());
+    }
+
+    // Test that the shortest walkable path is found and described as a depart, a left turn and an arrival
+    @Test
+    void testRoutesAlongShortestPath() {
+        Optional<CompactRoute> route = router.route(53.8, -1.5, 53.801, -1.502);
+
+        assertTrue(route.isPresent());
+        assertEquals(3, route.get().steps().size());
+        assertEquals("Head north on Park Lane", route.get().steps().get(0).instruction());
+        assertEquals("Turn left onto Oakwood Road", route.get().steps().get(1).instruction());
+        assertEquals(10, route.get().steps().get(2).type());
+        // About 111 m north and 132 m west, not the footpath round the corner
+        assertEquals(243, route.get().distance(), 5);
+        assertEquals(route.get().distance() / (5.0 / 3.6), route.get().duration(), 1e-6);
+    }
+
+    // Test that trips the graph does not cover are left to OpenRouteService
+    @Test
+    void testLeavesUncoveredTripsToCaller() {
+        assertTrue(router.supports("foot-walking"));
+        assertFalse(router.supports("driving-car"));
+        // The destination is kilometres from any path
+        assertTrue(router.route(53.8, -1.5, 54.0, -1.5).isEmpty());
+        // No path connects Park Lane to Island Path
+        assertTrue(router.route(53.8, -1.5, 53.81, -1.5).isEmpty());
+    }
+
+    // Test that a single pooled search state is returned after each search, including failed ones, and reused
+    @Test
+    void testReusesPooledSearchState() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("routing.graph.path", directory.resolve("paths.geojson").toString())
+                .withProperty("routing.search-states", "1");
+        environment.setConversionService(new ApplicationConversionService());
+        WalkingRouter pooled = new WalkingRouter(environment, new ObjectMapper());
+
+        assertTrue(pooled.route(53.8, -1.5, 53.81, -1.5).isEmpty());
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Optional<CompactRoute> route = pooled.route(53.8, -1.5, 53.801, -1.502);
+            assertTrue(route.isPresent());
+            assertEquals(243, route.get().distance(), 5);
+        }
+    }
+
+    // Test that the router is disabled when no graph is configured
+    @Test
+    void testDisabledWithoutGraph() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setConversionService(new ApplicationConversionService());
+        WalkingRouter disabled = new WalkingRouter(environment, new ObjectMapper());
+
+        assertFalse(disabled.supports("foot-walking"));
+        assertTrue(disabled.route(53.8, -1.5, 53.801, -1.502).isEmpty());
+    }
+
+    // Test that a graph file that can be read but not parsed disables the router instead of failing startup
+    @Test
+    void testDisabledWithCorruptGraph() throws Exception {
+        Path file = Files.writeString(directory.resolve("corrupt.geojson"), GRAPH.substring(0, GRAPH.length() / 2));
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("routing.graph.path", file.toString());
+        environment.setConversionService(new ApplicationConversionService());
+        WalkingRouter disabled = new WalkingRouter(environment, new ObjectMapper());
+
+        assertFalse(disabled.supports("foot-walking"));
+        assertTrue(disabled.route(53.8, -1.5, 53.801, -1.502).isEmpty());
+    }
+}
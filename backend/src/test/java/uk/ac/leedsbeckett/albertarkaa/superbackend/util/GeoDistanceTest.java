@@ -0,0 +1,27 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoDistanceTest {
+
+    // Test that a degree along a meridian or the equator is a 360th of the Earth's circumference
+    @Test
+    void testOneDegree() {
+        double degree = 2 * Math.PI * GeoDistance.EARTH_RADIUS_METRES / 360;
+
+        assertEquals(degree, GeoDistance.haversineMetres(53, -1.5, 54, -1.5), 0.01);
+        assertEquals(degree, GeoDistance.haversineMetres(0, 10, 0, 11), 0.01);
+        assertEquals(0, GeoDistance.haversineMetres(53.8, -1.55, 53.8, -1.55));
+    }
+
+    // Test that a degree of longitude shrinks with the cosine of the latitude, and that order does not matter
+    @Test
+    void testLongitudeShrinksTowardsPoles() {
+        double atLeeds = GeoDistance.haversineMetres(53.8, -1.55, 53.8, -1.54);
+
+        assertEquals(GeoDistance.haversineMetres(0, -1.55, 0, -1.54) * Math.cos(Math.toRadians(53.8)), atLeeds, 0.01);
+        assertEquals(atLeeds, GeoDistance.haversineMetres(53.8, -1.54, 53.8, -1.55), 1e-9);
+    }
+}
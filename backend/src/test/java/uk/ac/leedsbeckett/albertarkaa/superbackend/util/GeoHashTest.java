@@ -0,0 +1,39 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoHashTest {
+
+    // Test encoding against a well-known reference geohash
+    @Test
+    void testEncode() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("gcwf", GeoHash.encode(53.8429, -1.4978, 4));
+    }
+
+    // Test that the decoded centre encodes back to the same tile
+    @Test
+    void testDecodeCenterRoundTrip() {
+        String geohash = GeoHash.encode(53.8429, -1.4978, 6);
+        double[] center = GeoHash.decodeCenter(geohash);
+
+        assertEquals(geohash, GeoHash.encode(center[0], center[1], 6));
+        assertEquals(53.8429, center[0], 0.01);
+        assertEquals(-1.4978, center[1], 0.01);
+    }
+
+    // Test that two points a few metres apart share a tile
+    @Test
+    void testNearbyPointsShareTile() {
+        assertEquals(GeoHash.encode(53.84290, -1.49780, 6), GeoHash.encode(53.84292, -1.49783, 6));
+    }
+
+    // Test that invalid precisions are rejected
+    @Test
+    void testInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, 13));
+    }
+}
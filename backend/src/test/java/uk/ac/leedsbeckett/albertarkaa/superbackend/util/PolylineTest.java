@@ -0,0 +1,43 @@
+package uk.ac.leedsbeckett.albertarkaa.superbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolylineTest {
+
+    // Test encoding against the example from the Encoded Polyline Algorithm documentation
+    @Test
+    void testEncode() {
+        List<double[]> points = List.of(
+                new double[]{-120.2, 38.5},
+                new double[]{-120.95, 40.7},
+                new double[]{-126.453, 43.252});
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", Polyline.encode(points));
+    }
+
+    // Test that decoding returns the encoded coordinates to five decimal places
+    @Test
+    void testDecodeRoundTrip() {
+        List<double[]> points = List.of(
+                new double[]{-1.49781, 53.84292},
+                new double[]{-1.49512, 53.84407},
+                new double[]{-1.48907, 53.83911});
+
+        List<double[]> decoded = Polyline.decode(Polyline.encode(points));
+
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertArrayEquals(points.get(i), decoded.get(i), 1e-9);
+        }
+    }
+
+    // Test that a truncated polyline is rejected
+    @Test
+    void testDecodeTruncated() {
+        assertThrows(IllegalArgumentException.class, () -> Polyline.decode("_p~iF~ps|U_"));
+    }
+}